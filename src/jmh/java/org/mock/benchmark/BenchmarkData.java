@@ -0,0 +1,115 @@
+package org.mock.benchmark;
+
+import org.mock.util.MessageKeys;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Generates processing folders shaped like the production input: Vietnamese product and customer names,
+ * 1-5 product lines per order and ISO offset timestamps with microseconds. A fixed seed keeps runs comparable.
+ */
+public final class BenchmarkData {
+    private static final String[] PRODUCT_NAMES = {"Nồi cơm điện", "Bình giữ nhiệt", "Kem trộn", "Túi xách da cá sấu", "Quạt điện"};
+    private static final String[] FIRST_NAMES = {"Nguyễn", "Trần", "Lê", "Phạm", "Hoàng"};
+    private static final String[] LAST_NAMES = {"Phương Lan", "Đạt Tùng", "Lan Anh", "Minh Đức", "Thu Hà"};
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Creates a processing folder with origin files of the given sizes and a product ID search file.
+     */
+    public static Path createProcessingFolder(int productCount, int customerCount, int orderCount) throws IOException {
+        Path folder = Files.createTempDirectory("consolog-benchmark");
+        Files.createDirectories(folder.resolve("OutputFolder"));
+        Random random = new Random(42);
+        try (BufferedWriter writer = writer(folder, MessageKeys.FILE_PATH_PRODUCT)) {
+            writer.write("id,name,price,Stock Available\n");
+            for (int i = 1; i <= productCount; i++) {
+                writer.write(productId(i) + "," + PRODUCT_NAMES[random.nextInt(PRODUCT_NAMES.length)] + ","
+                        + random.nextInt(1000) + "." + String.format("%02d", random.nextInt(100)) + ","
+                        + (100 + random.nextInt(900)) + "\n");
+            }
+        }
+        try (BufferedWriter writer = writer(folder, MessageKeys.FILE_PATH_CUSTOMER)) {
+            writer.write("id,name,email,phonenumber\n");
+            for (int i = 1; i <= customerCount; i++) {
+                writer.write(customerId(i) + "," + FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+                        + LAST_NAMES[random.nextInt(LAST_NAMES.length)] + "," + email(random) + ","
+                        + phoneNumber(i) + "\n");
+            }
+        }
+        try (BufferedWriter writer = writer(folder, MessageKeys.FILE_PATH_ORDER)) {
+            writer.write("Id,CustomerID,ProductQuantities,OrderDate\n");
+            for (int i = 1; i <= orderCount; i++) {
+                writer.write(String.format("ORD%07d", i) + "," + customerId(1 + random.nextInt(customerCount)) + ","
+                        + productQuantities(random, productCount) + "," + orderDate(random) + "\n");
+            }
+        }
+        try (BufferedWriter writer = writer(folder, MessageKeys.FILE_PATH_SEARCH_PRODUCT_ID)) {
+            writer.write("id\n");
+            for (int i = 0; i < 5; i++) {
+                writer.write(productId(1 + random.nextInt(productCount)) + "\n");
+            }
+        }
+        return folder;
+    }
+
+    public static void deleteFolder(Path folder) throws IOException {
+        try (Stream<Path> paths = Files.walk(folder)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    public static String productId(int index) {
+        return String.format("P%04d", index);
+    }
+
+    public static String customerId(int index) {
+        return String.format("CUS%04d", index);
+    }
+
+    public static String email(Random random) {
+        StringBuilder local = new StringBuilder();
+        for (int i = 0; i < 8; i++) {
+            local.append((char) ('a' + random.nextInt(26)));
+        }
+        return local + "@gmail.com";
+    }
+
+    public static String phoneNumber(int index) {
+        return String.format("03%08d", index);
+    }
+
+    public static String productQuantities(Random random, int productCount) {
+        StringBuilder quantities = new StringBuilder();
+        int lines = 1 + random.nextInt(5);
+        for (int i = 0; i < lines; i++) {
+            if (i > 0) {
+                quantities.append(';');
+            }
+            quantities.append(productId(1 + random.nextInt(productCount))).append(':').append(1 + random.nextInt(50));
+        }
+        return quantities.toString();
+    }
+
+    public static String orderDate(Random random) {
+        return String.format("2024-%02d-%02dT%02d:%02d:%02d.%06d+07:00", 1 + random.nextInt(12), 1 + random.nextInt(28),
+                random.nextInt(24), random.nextInt(60), random.nextInt(60), random.nextInt(1_000_000));
+    }
+
+    private static BufferedWriter writer(Path folder, String fileName) throws IOException {
+        Path file = folder.resolve(fileName);
+        Files.createDirectories(file.getParent());
+        return Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+    }
+}
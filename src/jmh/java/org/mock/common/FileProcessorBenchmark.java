@@ -0,0 +1,63 @@
+package org.mock.common;
+
+import org.mock.benchmark.BenchmarkData;
+import org.mock.model.Order;
+import org.mock.service.CustomerService;
+import org.mock.service.OrderService;
+import org.mock.service.ProductService;
+import org.mock.util.MessageKeys;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileProcessorBenchmark {
+    @Param("100000")
+    int orderCount;
+
+    private Path folder;
+    private FileProcessor<Order> fileProcessor;
+    private OrderService orderService;
+    private List<Order> orders;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        folder = BenchmarkData.createProcessingFolder(1000, 5000, orderCount);
+        fileProcessor = new FileProcessor<>(folder.toString());
+        ProductService productService = new ProductService(folder.toString());
+        productService.loadProducts();
+        orderService = new OrderService(new CustomerService(folder.toString()), productService, folder.toString());
+        orders = new ArrayList<>(orderService.loadOrders());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileProcessor.closeErrorLogs();
+        BenchmarkData.deleteFolder(folder);
+    }
+
+    @Benchmark
+    public List<String[]> readFile() {
+        return fileProcessor.readFile(MessageKeys.FILE_PATH_ORDER);
+    }
+
+    @Benchmark
+    public void forEachRow(Blackhole blackhole) {
+        fileProcessor.forEachRow(MessageKeys.FILE_PATH_ORDER, (values, lineNumber) -> blackhole.consume(values));
+    }
+
+    @Benchmark
+    public void writeFile() {
+        fileProcessor.writeFile(MessageKeys.FILE_OUTPUT_ORDER, orders, orderService::formatOrder, orderService.createHeader());
+    }
+}
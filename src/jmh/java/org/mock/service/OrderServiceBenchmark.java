@@ -0,0 +1,69 @@
+package org.mock.service;
+
+import org.mock.benchmark.BenchmarkData;
+import org.mock.model.Order;
+import org.mock.model.Product;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderServiceBenchmark {
+    private static final int SAMPLES = 1024;
+    private static final int PRODUCT_COUNT = 1000;
+
+    private final String[] productQuantities = new String[SAMPLES];
+    private final Order[] orders = new Order[SAMPLES];
+    private final Map<String, Product> productMap = new HashMap<>();
+    private final StringBuilder row = new StringBuilder(256);
+    private OrderService orderService;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 1; i <= PRODUCT_COUNT; i++) {
+            String id = BenchmarkData.productId(i);
+            productMap.put(id, Product.ofCents(id, "Nồi cơm điện", 100 + random.nextInt(100_000), 100 + random.nextInt(900)));
+        }
+        orderService = new OrderService(null, null, ".");
+        for (int i = 0; i < SAMPLES; i++) {
+            productQuantities[i] = BenchmarkData.productQuantities(random, PRODUCT_COUNT);
+            orders[i] = new Order(String.format("ORD%07d", i), BenchmarkData.customerId(1 + random.nextInt(5000)),
+                    orderService.parseProductQuantities(productQuantities[i]),
+                    OffsetDateTime.parse(BenchmarkData.orderDate(random)));
+            orders[i].setTotalCents(OrderService.calculateTotalCents(orders[i], productMap, false));
+        }
+    }
+
+    private int nextSample() {
+        next = (next + 1) & (SAMPLES - 1);
+        return next;
+    }
+
+    @Benchmark
+    public Map<String, Integer> parseProductQuantities() {
+        return orderService.parseProductQuantities(productQuantities[nextSample()]);
+    }
+
+    @Benchmark
+    public long calculateTotalCents() {
+        return OrderService.calculateTotalCents(orders[nextSample()], productMap, true);
+    }
+
+    @Benchmark
+    public StringBuilder formatOrder() {
+        row.setLength(0);
+        orderService.formatOrder(orders[nextSample()], row);
+        return row;
+    }
+}
@@ -0,0 +1,50 @@
+package org.mock.service;
+
+import org.mock.benchmark.BenchmarkData;
+import org.mock.common.FileProcessor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchServiceBenchmark {
+    @Param("100000")
+    int orderCount;
+
+    private Path folder;
+    private SearchService searchService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        folder = BenchmarkData.createProcessingFolder(1000, 5000, orderCount);
+        ProductService productService = new ProductService(folder.toString());
+        CustomerService customerService = new CustomerService(folder.toString());
+        OrderService orderService = new OrderService(customerService, productService, folder.toString());
+        productService.loadProducts();
+        orderService.loadOrders();
+        searchService = new SearchService(productService, orderService, folder.toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileProcessor.closeErrorLogs();
+        BenchmarkData.deleteFolder(folder);
+    }
+
+    @Benchmark
+    public void searchToProduct() {
+        searchService.searchToProduct();
+    }
+
+    @Benchmark
+    public void searchOrdersByProductId() {
+        searchService.searchOrdersByProductId();
+    }
+}
@@ -0,0 +1,65 @@
+package org.mock.validate;
+
+import org.mock.benchmark.BenchmarkData;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidatorBenchmark {
+    private static final int SAMPLES = 1024;
+
+    private final String[] emails = new String[SAMPLES];
+    private final String[] phoneNumbers = new String[SAMPLES];
+    private final String[] orderDates = new String[SAMPLES];
+    private final CustomerValidator customerValidator = new CustomerValidator();
+    private final OrderValidator orderValidator = new OrderValidator();
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLES; i++) {
+            emails[i] = BenchmarkData.email(random);
+            phoneNumbers[i] = BenchmarkData.phoneNumber(i);
+            orderDates[i] = BenchmarkData.orderDate(random);
+        }
+    }
+
+    private int nextSample() {
+        next = (next + 1) & (SAMPLES - 1);
+        return next;
+    }
+
+    @Benchmark
+    public void validateEmail() {
+        customerValidator.validateEmail(emails[nextSample()], false);
+    }
+
+    @Benchmark
+    public void validatePhoneNumber() {
+        customerValidator.validatePhoneNumber(phoneNumbers[nextSample()], false);
+    }
+
+    // the patterns the scanners replaced, as a baseline for validateEmail and validatePhoneNumber
+    @Benchmark
+    public boolean emailPattern() {
+        return CustomerValidator.EMAIL_PATTERN.matcher(emails[nextSample()]).matches();
+    }
+
+    @Benchmark
+    public boolean phonePattern() {
+        return CustomerValidator.PHONE_PATTERN.matcher(phoneNumbers[nextSample()]).matches();
+    }
+
+    @Benchmark
+    public void validateOrderDate() {
+        orderValidator.validateOrderDate(orderDates[nextSample()]);
+    }
+}
@@ -1,18 +1,72 @@
 package org.mock;
 
+import org.mock.enums.DeletePolicyEnum;
+import org.mock.service.SearchService;
 import org.mock.view.SystemManager;
+import org.mock.view.SystemServer;
+
+import java.io.IOException;
 
 public class Main {
+    private static final String EXTERNAL_MEMORY_OPTION = "--external-memory";
+    private static final String DELETE_POLICY_OPTION = "--delete-policy=";
+    private static final String TOP_PRODUCTS_OPTION = "--top-products=";
+    private static final String OPTION_PREFIX = "--";
+
     public static void main(String[] args) {
         if (args.length < 2) {
-            System.out.println("Error: Missing arguments. Usage: <function_code> <processing_folder_path>");
+            System.out.println("Error: Missing arguments. Usage: <function_code> <processing_folder_path> [options]"
+                    + " | serve <processing_folder_path> [port] [options]; options: " + EXTERNAL_MEMORY_OPTION
+                    + " " + DELETE_POLICY_OPTION + "ignore|block|cascade " + TOP_PRODUCTS_OPTION + "<count>");
             return;
         }
-        String functionCode = args[0];
+        boolean serve = args[0].equals("serve");
         String folderPath = args[1];
-        SystemManager systemManager = new SystemManager(folderPath);
-        systemManager.processFunction(functionCode);
+        int port = SystemServer.DEFAULT_PORT;
+        boolean externalMemory = false;
+        DeletePolicyEnum deletePolicy = DeletePolicyEnum.IGNORE;
+        int topProductCount = SearchService.DEFAULT_TOP_PRODUCT_COUNT;
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals(EXTERNAL_MEMORY_OPTION)) {
+                externalMemory = true;
+            } else if (args[i].startsWith(DELETE_POLICY_OPTION)) {
+                deletePolicy = DeletePolicyEnum.fromName(args[i].substring(DELETE_POLICY_OPTION.length()));
+                if (deletePolicy == null) {
+                    System.out.println("Error: Unknown delete policy: " + args[i]);
+                    return;
+                }
+            } else if (args[i].startsWith(TOP_PRODUCTS_OPTION)) {
+                topProductCount = parseCount(args[i].substring(TOP_PRODUCTS_OPTION.length()));
+                if (topProductCount < 1) {
+                    System.out.println("Error: Invalid top product count: " + args[i]);
+                    return;
+                }
+            } else if (serve && !args[i].startsWith(OPTION_PREFIX)) {
+                port = Integer.parseInt(args[i]);
+            }
+        }
+        if (serve) {
+            try {
+                new SystemServer(folderPath, port, externalMemory, deletePolicy, topProductCount).serve();
+            } catch (IOException e) {
+                System.out.println("Error: Could not start server: " + e.getMessage());
+            }
+            return;
+        }
+        SystemManager systemManager = new SystemManager(folderPath, externalMemory, deletePolicy, topProductCount);
+        systemManager.processFunction(args[0]);
 //        ConsoleMenuManager consoleMenuManager = new ConsoleMenuManager();
 //        consoleMenuManager.displayMenu();
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the count, or -1 when the value is not a number.
+     */
+    private static int parseCount(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
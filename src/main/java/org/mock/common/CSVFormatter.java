@@ -1,5 +1,11 @@
 package org.mock.common;
 
 public interface CSVFormatter<T> {
-    String format(T object);
+    void format(T object, StringBuilder out);
+
+    default String format(T object) {
+        StringBuilder out = new StringBuilder();
+        format(object, out);
+        return out.toString();
+    }
 }
@@ -0,0 +1,215 @@
+package org.mock.common;
+
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reusable single-line CSV tokenizer. A line is decoded once into an internal char buffer and split into
+ * field slices; fields are only turned into {@code String}s when asked for, and numbers can be parsed straight
+ * from the slices. One instance is meant to be reused for every line of a file and is not thread-safe.
+ */
+public class CSVTokenizer {
+    private static final int MAX_FAST_INT_DIGITS = 9;
+    private static final int MAX_FAST_DOUBLE_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final char delimiter;
+    private char[] chars = new char[256];
+    private CharBuffer view = CharBuffer.wrap(chars);
+    private int length;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int fieldCount;
+
+    public CSVTokenizer(char delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    public CSVTokenizer reset(String line) {
+        ensureCapacity(line.length());
+        line.getChars(0, line.length(), chars, 0);
+        length = line.length();
+        split();
+        return this;
+    }
+
+    /**
+     * Decodes a UTF-8 encoded line. Pure ASCII input is copied byte-for-byte; the first non-ASCII byte switches
+     * to the JDK decoder for the rest of the line.
+     */
+    public CSVTokenizer reset(byte[] bytes, int offset, int len) {
+        ensureCapacity(len);
+        int i = 0;
+        while (i < len) {
+            byte b = bytes[offset + i];
+            if (b < 0) {
+                break;
+            }
+            chars[i++] = (char) b;
+        }
+        length = i;
+        if (i < len) {
+            String rest = new String(bytes, offset + i, len - i, StandardCharsets.UTF_8);
+            rest.getChars(0, rest.length(), chars, i);
+            length += rest.length();
+        }
+        split();
+        return this;
+    }
+
+    /**
+     * Same test as {@code line.trim().isEmpty()}.
+     */
+    public boolean isBlank() {
+        for (int i = 0; i < length; i++) {
+            if (chars[i] > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    public String field(int index) {
+        return new String(chars, starts[index], ends[index] - starts[index]);
+    }
+
+    public boolean isEmpty(int index) {
+        return starts[index] == ends[index];
+    }
+
+    public int intField(int index) {
+        return parseInt(view, starts[index], ends[index]);
+    }
+
+    public double doubleField(int index) {
+        return parseDouble(view, starts[index], ends[index]);
+    }
+
+    /**
+     * Materializes the fields with the same result as {@code line.split(delimiter)}: trailing empty fields are
+     * dropped, and a line without any delimiter is returned whole.
+     */
+    public String[] toArray() {
+        if (fieldCount == 1) {
+            return new String[]{field(0)};
+        }
+        int count = fieldCount;
+        while (count > 0 && isEmpty(count - 1)) {
+            count--;
+        }
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = field(i);
+        }
+        return values;
+    }
+
+    /**
+     * Parses {@code s[from, to)} with the semantics of {@link Integer#parseInt(String)}, including the exception
+     * thrown for malformed input. Short ASCII numbers are decoded in place; anything else goes through the JDK.
+     */
+    public static int parseInt(CharSequence s, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+        int digits = to - i;
+        if (digits == 0 || digits > MAX_FAST_INT_DIGITS) {
+            return Integer.parseInt(s.subSequence(from, to).toString());
+        }
+        int value = 0;
+        for (; i < to; i++) {
+            int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return Integer.parseInt(s.subSequence(from, to).toString());
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    public static int parseInt(CharSequence s) {
+        return parseInt(s, 0, s.length());
+    }
+
+    /**
+     * Parses {@code s[from, to)} with the semantics of {@link Double#parseDouble(String)}. Plain decimals with at
+     * most 15 digits are exact as a long and the power of ten is exact as a double, so a single division gives the
+     * correctly rounded result; every other shape goes through the JDK.
+     */
+    public static double parseDouble(CharSequence s, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; i < to; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                if (++digits > MAX_FAST_DOUBLE_DIGITS) {
+                    return Double.parseDouble(s.subSequence(from, to).toString());
+                }
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                return Double.parseDouble(s.subSequence(from, to).toString());
+            }
+        }
+        if (digits == 0) {
+            return Double.parseDouble(s.subSequence(from, to).toString());
+        }
+        double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+        return negative ? -value : value;
+    }
+
+    public static double parseDouble(CharSequence s) {
+        return parseDouble(s, 0, s.length());
+    }
+
+    private void split() {
+        fieldCount = 0;
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            if (chars[i] == delimiter) {
+                addField(start, i);
+                start = i + 1;
+            }
+        }
+        addField(start, length);
+    }
+
+    private void addField(int start, int end) {
+        if (fieldCount == starts.length) {
+            starts = Arrays.copyOf(starts, fieldCount * 2);
+            ends = Arrays.copyOf(ends, fieldCount * 2);
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        fieldCount++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > chars.length) {
+            chars = new char[Math.max(capacity, chars.length * 2)];
+            view = CharBuffer.wrap(chars);
+        }
+    }
+}
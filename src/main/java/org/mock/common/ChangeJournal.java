@@ -0,0 +1,173 @@
+package org.mock.common;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Append-only change log kept beside an output file as {@code <output>.changes}. The output file is the base and
+ * the effective content is the base with the logged entries applied in order:
+ * <pre>
+ * #changes,&lt;baseVersion&gt;,&lt;baseSize&gt;,&lt;baseModified&gt;,&lt;keyColumn&gt;
+ * !,&lt;key&gt;   the base row for this key differs from the loaded dataset identified by baseVersion
+ * +,&lt;row&gt;   insert or replace the row with the same value in the key column
+ * -,&lt;key&gt;   remove the row with this key
+ * </pre>
+ * The log is ignored once the base file no longer has the recorded size and modification time, and an entry line
+ * without its key, such as one cut short by a crash, is skipped.
+ */
+class ChangeJournal {
+    private static final String HEADER = "#changes";
+    private static final char DIRTY = '!';
+    private static final char UPSERT = '+';
+    private static final char DELETE = '-';
+
+    private final Path basePath;
+    private final Path journalPath;
+
+    ChangeJournal(Path basePath) {
+        this.basePath = basePath;
+        this.journalPath = basePath.resolveSibling(basePath.getFileName() + ".changes");
+    }
+
+    record State(long baseVersion, int keyColumn, Set<String> touchedKeys, int entryCount) {
+    }
+
+    /**
+     * Returns the keys the log touches, or {@code null} when there is no log for the current base file.
+     */
+    State readState() throws IOException {
+        CSVTokenizer tokenizer = new CSVTokenizer(',');
+        try (BufferedReader reader = openValid(tokenizer)) {
+            if (reader == null) {
+                return null;
+            }
+            long baseVersion = Long.parseLong(tokenizer.field(1));
+            int keyColumn = tokenizer.intField(4);
+            Set<String> touchedKeys = new LinkedHashSet<>();
+            int entryCount = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String key = keyOf(tokenizer, line, keyColumn);
+                if (key == null) {
+                    continue;
+                }
+                touchedKeys.add(key);
+                if (line.charAt(0) != DIRTY) {
+                    entryCount++;
+                }
+            }
+            return new State(baseVersion, keyColumn, touchedKeys, entryCount);
+        }
+    }
+
+    /**
+     * Applies the log to the rows of the base file; does nothing when there is no log for the current base.
+     */
+    void applyTo(Map<String, String[]> rowsByKey) throws IOException {
+        CSVTokenizer tokenizer = new CSVTokenizer(',');
+        try (BufferedReader reader = openValid(tokenizer)) {
+            if (reader == null) {
+                return;
+            }
+            int keyColumn = tokenizer.intField(4);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String key = keyOf(tokenizer, line, keyColumn);
+                if (key == null) {
+                    continue;
+                }
+                if (line.charAt(0) == UPSERT) {
+                    rowsByKey.put(key, tokenizer.reset(line.substring(2)).toArray());
+                } else if (line.charAt(0) == DELETE) {
+                    rowsByKey.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts an empty log for a base file that has just been rewritten in full.
+     */
+    void reset(long baseVersion, int keyColumn, Collection<String> dirtyKeys) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(journalPath, StandardCharsets.UTF_8)) {
+            writer.write(String.join(",", HEADER, String.valueOf(baseVersion), String.valueOf(Files.size(basePath)),
+                    String.valueOf(Files.getLastModifiedTime(basePath).toMillis()), String.valueOf(keyColumn)));
+            writer.newLine();
+            for (String key : dirtyKeys) {
+                writer.write(DIRTY + "," + key);
+                writer.newLine();
+            }
+        }
+    }
+
+    BufferedWriter append() throws IOException {
+        return Files.newBufferedWriter(journalPath, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(journalPath);
+    }
+
+    static void writeUpsert(BufferedWriter writer, CharSequence row) throws IOException {
+        writer.write(UPSERT);
+        writer.write(',');
+        writer.append(row);
+        writer.newLine();
+    }
+
+    static void writeDelete(BufferedWriter writer, String key) throws IOException {
+        writer.write(DELETE);
+        writer.write(',');
+        writer.write(key);
+        writer.newLine();
+    }
+
+    /**
+     * Returns the key of an entry line, or {@code null} when the line is not a complete entry.
+     */
+    private static String keyOf(CSVTokenizer tokenizer, String line, int keyColumn) {
+        if (line.length() < 2 || line.charAt(1) != ',') {
+            return null;
+        }
+        char type = line.charAt(0);
+        int column = type == UPSERT ? keyColumn + 1 : 1;
+        if ((type != UPSERT && type != DELETE && type != DIRTY) || tokenizer.reset(line).fieldCount() <= column) {
+            return null;
+        }
+        String key = tokenizer.field(column);
+        return key.isEmpty() ? null : key;
+    }
+
+    private BufferedReader openValid(CSVTokenizer tokenizer) throws IOException {
+        if (!Files.isRegularFile(journalPath) || !Files.isRegularFile(basePath)) {
+            return null;
+        }
+        BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8);
+        String header = reader.readLine();
+        try {
+            if (header != null && tokenizer.reset(header).fieldCount() == 5 && tokenizer.field(0).equals(HEADER)
+                    && Long.parseLong(tokenizer.field(2)) == Files.size(basePath)
+                    && Long.parseLong(tokenizer.field(3)) == Files.getLastModifiedTime(basePath).toMillis()) {
+                Long.parseLong(tokenizer.field(1));
+                tokenizer.intField(4);
+                return reader;
+            }
+        } catch (NumberFormatException e) {
+            // a damaged header is treated like a stale one
+        }
+        reader.close();
+        return null;
+    }
+}
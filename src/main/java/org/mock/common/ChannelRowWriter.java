@@ -0,0 +1,121 @@
+package org.mock.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Encodes text rows as UTF-8 straight into pooled direct buffers and hands full buffers to the channel in
+ * gathering writes. The buffers are returned to a process-wide pool when the writer is closed.
+ */
+class ChannelRowWriter implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int BUFFERS_PER_WRITE = 16;
+    private static final int MAX_POOLED_BUFFERS = 64;
+    private static final ConcurrentLinkedQueue<ByteBuffer> POOL = new ConcurrentLinkedQueue<>();
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final FileChannel channel;
+    private final List<ByteBuffer> filled = new ArrayList<>(BUFFERS_PER_WRITE);
+    private ByteBuffer current = acquire();
+
+    ChannelRowWriter(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    void writeLine(CharSequence row) throws IOException {
+        encode(row);
+        encode(LINE_SEPARATOR);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            rotate();
+            drain();
+        } finally {
+            for (ByteBuffer buffer : filled) {
+                release(buffer);
+            }
+            filled.clear();
+            release(current);
+            current = null;
+        }
+    }
+
+    private void encode(CharSequence text) throws IOException {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            if (current.remaining() < 4) {
+                rotate();
+            }
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                current.put((byte) c);
+            } else if (c < 0x800) {
+                current.put((byte) (0xC0 | (c >> 6)));
+                current.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                    current.put((byte) (0xF0 | (codePoint >> 18)));
+                    current.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                    current.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                    current.put((byte) (0x80 | (codePoint & 0x3F)));
+                } else {
+                    current.put((byte) '?');
+                }
+            } else {
+                current.put((byte) (0xE0 | (c >> 12)));
+                current.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                current.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    private void rotate() throws IOException {
+        if (current.position() == 0) {
+            return;
+        }
+        current.flip();
+        filled.add(current);
+        current = acquire();
+        if (filled.size() == BUFFERS_PER_WRITE) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        if (filled.isEmpty()) {
+            return;
+        }
+        ByteBuffer[] buffers = filled.toArray(new ByteBuffer[0]);
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+        for (ByteBuffer buffer : buffers) {
+            release(buffer);
+        }
+        filled.clear();
+    }
+
+    private static ByteBuffer acquire() {
+        ByteBuffer buffer = POOL.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    private static void release(ByteBuffer buffer) {
+        if (buffer != null && POOL.size() < MAX_POOLED_BUFFERS) {
+            buffer.clear();
+            POOL.offer(buffer);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package org.mock.common;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A dataset restored from a binary snapshot: the loaded entries keyed as in the owning service, plus the error
+ * messages the original load reported so they can be logged again.
+ */
+public record DatasetSnapshot<V>(Map<String, V> entries, List<String> errors) {
+
+    public static List<String> readErrors(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> errors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            errors.add(in.readUTF());
+        }
+        return errors;
+    }
+
+    public static void writeErrors(DataOutputStream out, List<String> errors) throws IOException {
+        out.writeInt(errors.size());
+        for (String error : errors) {
+            out.writeUTF(error);
+        }
+    }
+}
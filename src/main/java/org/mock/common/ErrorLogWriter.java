@@ -0,0 +1,202 @@
+package org.mock.common;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Long-lived appender for an error log file. Messages go through a bounded queue to a single writer thread that
+ * keeps the file open and writes them in batches, in the order they were queued. There is one writer per file,
+ * shared by every {@link FileProcessor} that logs to it.
+ */
+public class ErrorLogWriter {
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final int MAX_BATCH_SIZE = 1024;
+    private static final Map<Path, ErrorLogWriter> WRITERS = new ConcurrentHashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(ErrorLogWriter::closeAll, "error-log-shutdown"));
+    }
+
+    private final Path logFile;
+    private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writerThread;
+
+    private ErrorLogWriter(Path logFile) {
+        this.logFile = logFile;
+        this.writerThread = new Thread(this::run, "error-log-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    public static ErrorLogWriter forFile(Path logFile) {
+        return WRITERS.computeIfAbsent(logFile.toAbsolutePath().normalize(), ErrorLogWriter::new);
+    }
+
+    /**
+     * Flushes and closes every open error log. Writers are reopened on the next message.
+     */
+    public static void closeAll() {
+        for (Path path : List.copyOf(WRITERS.keySet())) {
+            ErrorLogWriter writer = WRITERS.remove(path);
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    /**
+     * Blocks until every message queued so far, to any error log, is on disk.
+     */
+    public static void flushAll() {
+        for (ErrorLogWriter writer : WRITERS.values()) {
+            writer.flush();
+        }
+    }
+
+    public void write(String message) {
+        enqueue(message);
+    }
+
+    /**
+     * Queues the messages as one entry, so a batch of errors costs a single hand-off to the writer thread.
+     */
+    public void writeAll(List<String> messages) {
+        if (!messages.isEmpty()) {
+            enqueue(List.copyOf(messages));
+        }
+    }
+
+    /**
+     * Blocks until every message queued so far is on disk.
+     */
+    public void flush() {
+        CountDownLatch written = new CountDownLatch(1);
+        enqueue(written);
+        awaitQuietly(written);
+    }
+
+    private void close() {
+        flush();
+        enqueue(Shutdown.INSTANCE);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enqueue(Object item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Interrupted while queuing error log message: " + item);
+        }
+    }
+
+    private void run() {
+        List<Object> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        BufferedWriter writer = null;
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                for (Object item : batch) {
+                    if (item instanceof String message) {
+                        writer = writer != null ? writer : open();
+                        writeLine(writer, message);
+                    } else if (item instanceof List<?> messages) {
+                        writer = writer != null ? writer : open();
+                        for (Object message : messages) {
+                            writeLine(writer, (String) message);
+                        }
+                    } else if (item instanceof CountDownLatch written) {
+                        flushQuietly(writer);
+                        written.countDown();
+                    } else {
+                        closeQuietly(writer);
+                        return;
+                    }
+                }
+                batch.clear();
+                if (queue.isEmpty()) {
+                    flushQuietly(writer);
+                }
+            }
+        } catch (InterruptedException e) {
+            closeQuietly(writer);
+        }
+    }
+
+    private BufferedWriter open() {
+        try {
+            Path parentDir = logFile.getParent();
+            if (parentDir != null) {
+                Files.createDirectories(parentDir);
+            }
+            return new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(logFile,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.out.println("Failed to write error log: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeLine(BufferedWriter writer, String message) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.write(message);
+            writer.newLine();
+        } catch (IOException e) {
+            System.out.println("Failed to write error log: " + e.getMessage());
+        }
+    }
+
+    private void flushQuietly(BufferedWriter writer) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            System.out.println("Failed to write error log: " + e.getMessage());
+        }
+    }
+
+    private void closeQuietly(BufferedWriter writer) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.out.println("Failed to write error log: " + e.getMessage());
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private enum Shutdown {
+        INSTANCE
+    }
+}
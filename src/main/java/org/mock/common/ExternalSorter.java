@@ -0,0 +1,215 @@
+package org.mock.common;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts more {@code (key, value)} records than fit in memory, by key and then value. Records are buffered up to
+ * a fixed count, each full buffer is written to the spill folder as a sorted run, and the runs are read back
+ * through a k-way merge. When there are more runs than can be merged at once, groups of them are first merged
+ * into longer runs, so the number of open files stays bounded. Closing the sorter deletes its runs.
+ */
+public class ExternalSorter implements Closeable {
+    private static final int MAX_MERGE_WIDTH = 64;
+    private static final int RUN_BUFFER_SIZE = 16 * 1024;
+    private static final Comparator<Record> ORDER = Comparator.comparing(Record::key).thenComparingLong(Record::value);
+
+    private final Path spillFolder;
+    private final int maxBufferedRecords;
+    private final List<Record> buffer = new ArrayList<>();
+    private final Deque<Path> runs = new ArrayDeque<>();
+    private final List<RunReader> openReaders = new ArrayList<>();
+
+    public ExternalSorter(Path spillFolder, int maxBufferedRecords) {
+        this.spillFolder = spillFolder;
+        this.maxBufferedRecords = maxBufferedRecords;
+    }
+
+    public void add(String key, long value) throws IOException {
+        buffer.add(new Record(key, value));
+        if (buffer.size() >= maxBufferedRecords) {
+            spill();
+        }
+    }
+
+    /**
+     * Ends the input and returns the records in order. The sorter accepts no more records afterwards.
+     */
+    public Cursor sorted() throws IOException {
+        if (!buffer.isEmpty()) {
+            spill();
+        }
+        while (runs.size() > MAX_MERGE_WIDTH) {
+            List<RunReader> group = new ArrayList<>(MAX_MERGE_WIDTH);
+            for (int i = 0; i < MAX_MERGE_WIDTH; i++) {
+                group.add(open(runs.poll()));
+            }
+            Path merged = newRun();
+            try (DataOutputStream out = openRun(merged)) {
+                Cursor cursor = new MergeCursor(group);
+                while (cursor.next()) {
+                    writeRecord(out, cursor.key(), cursor.value());
+                }
+            }
+            for (RunReader reader : group) {
+                reader.close();
+                openReaders.remove(reader);
+                Files.deleteIfExists(reader.run);
+            }
+            runs.add(merged);
+        }
+        List<RunReader> readers = new ArrayList<>(runs.size());
+        for (Path run : runs) {
+            readers.add(open(run));
+        }
+        return new MergeCursor(readers);
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (RunReader reader : openReaders) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        openReaders.clear();
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+        buffer.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void spill() throws IOException {
+        buffer.sort(ORDER);
+        Path run = newRun();
+        try (DataOutputStream out = openRun(run)) {
+            for (Record record : buffer) {
+                writeRecord(out, record.key(), record.value());
+            }
+        }
+        runs.add(run);
+        buffer.clear();
+    }
+
+    private Path newRun() throws IOException {
+        return Files.createTempFile(spillFolder, "run", ".tmp");
+    }
+
+    private static DataOutputStream openRun(Path run) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), RUN_BUFFER_SIZE));
+    }
+
+    private static void writeRecord(DataOutputStream out, String key, long value) throws IOException {
+        out.writeUTF(key);
+        out.writeLong(value);
+    }
+
+    private RunReader open(Path run) throws IOException {
+        RunReader reader = new RunReader(run);
+        openReaders.add(reader);
+        return reader;
+    }
+
+    /**
+     * Forward-only view of records in order.
+     */
+    public interface Cursor {
+        /**
+         * Moves to the next record; returns false when there are no more.
+         */
+        boolean next() throws IOException;
+
+        String key();
+
+        long value();
+    }
+
+    private record Record(String key, long value) {
+    }
+
+    private static final class RunReader implements Closeable {
+        private final Path run;
+        private final DataInputStream in;
+        private String key;
+        private long value;
+
+        private RunReader(Path run) throws IOException {
+            this.run = run;
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), RUN_BUFFER_SIZE));
+        }
+
+        private boolean advance() throws IOException {
+            try {
+                key = in.readUTF();
+            } catch (EOFException e) {
+                return false;
+            }
+            value = in.readLong();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static final class MergeCursor implements Cursor {
+        private final PriorityQueue<RunReader> heads = new PriorityQueue<>(
+                Comparator.<RunReader, String>comparing(reader -> reader.key).thenComparingLong(reader -> reader.value));
+        private String key;
+        private long value;
+
+        private MergeCursor(List<RunReader> readers) throws IOException {
+            for (RunReader reader : readers) {
+                if (reader.advance()) {
+                    heads.add(reader);
+                }
+            }
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            RunReader head = heads.poll();
+            if (head == null) {
+                return false;
+            }
+            key = head.key;
+            value = head.value;
+            if (head.advance()) {
+                heads.add(head);
+            }
+            return true;
+        }
+
+        @Override
+        public String key() {
+            return key;
+        }
+
+        @Override
+        public long value() {
+            return value;
+        }
+    }
+}
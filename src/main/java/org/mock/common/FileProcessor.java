@@ -2,54 +2,206 @@ package org.mock.common;
 
 import org.mock.util.MessageKeys;
 
-import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
 
 public class FileProcessor<T> {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final long PARALLEL_READ_THRESHOLD = 32L * 1024 * 1024;
+    private static final long MIN_CHUNK_SIZE = 8L * 1024 * 1024;
+    private static final int MIN_COMPACTION_ENTRIES = 1024;
+    private static final int COMPACTION_RATIO = 4;
+
     private final String folderPath;
+    private final long parallelReadThreshold;
+    private final long minChunkSize;
 
     public FileProcessor(String folderPath) {
+        this(folderPath, ForkJoinPool.getCommonPoolParallelism() > 1 ? PARALLEL_READ_THRESHOLD : Long.MAX_VALUE, MIN_CHUNK_SIZE);
+    }
+
+    FileProcessor(String folderPath, long parallelReadThreshold, long minChunkSize) {
         this.folderPath = folderPath;
+        this.parallelReadThreshold = parallelReadThreshold;
+        this.minChunkSize = minChunkSize;
     }
+
     public List<String[]> readFile(String fileName) {
         List<String[]> data = new ArrayList<>();
+        readLines(fileName, (values, lineNumber) -> data.add(values));
+        return data;
+    }
+
+    /**
+     * Streams the data rows of a CSV file to the handler one at a time, without keeping the file in memory.
+     * The header row is skipped; the line number passed to the handler is the index the row would have
+     * in the list returned by {@link #readFile(String)}.
+     */
+    public void forEachRow(String fileName, RowHandler handler) {
+        readLines(fileName, (values, lineNumber) -> {
+            if (lineNumber > 0) {
+                handler.handle(values, lineNumber);
+            }
+        });
+    }
+
+    private void readLines(String fileName, RowHandler handler) {
         String filePath = Paths.get(folderPath, fileName).toString();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(filePath), StandardCharsets.UTF_8)))  {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (!line.trim().isEmpty()) {
-                    String[] values = line.split(MessageKeys.CHARACTER);
-                    data.add(values);
-                }
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            if (channel.size() >= parallelReadThreshold) {
+                readChunksInParallel(channel, handler);
+            } else {
+                readSequentially(channel, handler);
             }
-        } catch (FileNotFoundException e) {
+        } catch (NoSuchFileException e) {
             writeErrorLog(MessageKeys.FILE_ERROR, "File not found: " + filePath);
             System.exit(1);
         } catch (IOException e) {
             writeErrorLog(MessageKeys.FILE_ERROR, "IOException while reading file: " + e.getMessage());
             System.exit(1);
-        } catch (Exception e) {
-            writeErrorLog(MessageKeys.FILE_ERROR, "Unexpected error: " + e.getMessage());
-            System.exit(1);
         }
-        return data;
     }
 
+    private void readSequentially(FileChannel channel, RowHandler handler) throws IOException {
+        LineSplitter splitter = new LineSplitter(handler, 0);
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        int limit = 0;
+        while (true) {
+            if (limit == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            int read = channel.read(ByteBuffer.wrap(buffer, limit, buffer.length - limit));
+            if (read < 0) {
+                splitter.finish(buffer, 0, limit);
+                return;
+            }
+            limit += read;
+            int lineStart = splitter.split(buffer, 0, limit);
+            System.arraycopy(buffer, lineStart, buffer, 0, limit - lineStart);
+            limit -= lineStart;
+        }
+    }
+
+    /**
+     * Cuts the file into byte ranges that end on a line break and tokenizes them on the fork-join pool.
+     * The chunks are handed to the handler strictly in file order, so duplicate checks and line numbers
+     * behave exactly as in a sequential read; only a bounded number of parsed chunks is held at once.
+     */
+    private void readChunksInParallel(FileChannel channel, RowHandler handler) throws IOException {
+        List<long[]> ranges = splitIntoChunks(channel);
+        int window = ForkJoinPool.getCommonPoolParallelism() * 2;
+        Deque<ForkJoinTask<List<String[]>>> pending = new ArrayDeque<>();
+        int next = 0;
+        int lineNumber = 0;
+        while (next < ranges.size() || !pending.isEmpty()) {
+            while (next < ranges.size() && pending.size() < window) {
+                long[] range = ranges.get(next++);
+                pending.add(ForkJoinPool.commonPool().submit(() -> parseChunk(channel, range[0], range[1])));
+            }
+            List<String[]> rows = joinChunk(pending.poll());
+            for (String[] values : rows) {
+                handler.handle(values, lineNumber++);
+            }
+        }
+    }
 
+    private List<long[]> splitIntoChunks(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long chunkSize = Math.max(minChunkSize, size / (ForkJoinPool.getCommonPoolParallelism() * 4L));
+        List<long[]> ranges = new ArrayList<>();
+        ByteBuffer probe = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        long start = 0;
+        while (start < size) {
+            long end = nextLineStart(channel, Math.min(start + chunkSize, size), probe);
+            ranges.add(new long[]{start, end});
+            start = end;
+        }
+        return ranges;
+    }
+
+    private long nextLineStart(FileChannel channel, long position, ByteBuffer probe) throws IOException {
+        long size = channel.size();
+        while (position < size) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (LineSplitter.isLineBreak(probe.get(i))) {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private List<String[]> parseChunk(FileChannel channel, long start, long end) {
+        byte[] bytes = new byte[Math.toIntExact(end - start)];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    throw new EOFException("Unexpected end of file at byte " + (start + buffer.position()));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        List<String[]> rows = new ArrayList<>();
+        LineSplitter splitter = new LineSplitter((values, lineNumber) -> rows.add(values), 0);
+        splitter.finish(bytes, splitter.split(bytes, 0, bytes.length), bytes.length);
+        return rows;
+    }
+
+    private List<String[]> joinChunk(ForkJoinTask<List<String[]>> task) throws IOException {
+        try {
+            return task.join();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+
+    /**
+     * Rewrites the file with the header and one formatted row per object. Rows are formatted into a single
+     * reused builder and encoded straight into pooled direct buffers, so no per-row strings are created.
+     */
     public void writeFile(String fileName, List<T> objects, CSVFormatter<T> formatter, String header) {
         String filePath = Paths.get(folderPath, fileName).toString();
-        File file = new File(filePath);
-        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
-            if (file.length() == 0) {
-                writer.write(header);
-                writer.newLine();
-            }
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             ChannelRowWriter writer = new ChannelRowWriter(channel)) {
+            new ChangeJournal(Paths.get(filePath)).delete();
+            writer.writeLine(header);
+            StringBuilder row = new StringBuilder(128);
             for (T obj : objects) {
-                writer.write(formatter.format(obj));
-                writer.newLine();
+                row.setLength(0);
+                formatter.format(obj, row);
+                writer.writeLine(row);
             }
         } catch (SecurityException e) {
             writeErrorLog(MessageKeys.FILE_ERROR, "SecurityException while writing file: " + filePath);
@@ -64,21 +216,251 @@ public class FileProcessor<T> {
     }
 
 
+    /**
+     * Opens the file for writing one row at a time, for outputs too large to collect into a list first, and writes
+     * the header. Rows go through the same pooled buffers as {@link #writeFile}; closing the writer ends the file.
+     */
+    public RowWriter openRowWriter(String fileName, CSVFormatter<T> formatter, String header) {
+        String filePath = Paths.get(folderPath, fileName).toString();
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            new ChangeJournal(Paths.get(filePath)).delete();
+            RowWriter writer = new RowWriter(channel, formatter);
+            writer.rows.writeLine(header);
+            return writer;
+        } catch (IOException e) {
+            closeQuietly(channel);
+            writeErrorLog(MessageKeys.FILE_ERROR, "IOException while writing file: " + e.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // already failing; the original error is the one reported
+            }
+        }
+    }
+
+    /**
+     * Output file being written row by row; see {@link #openRowWriter}.
+     */
+    public final class RowWriter implements AutoCloseable {
+        private final FileChannel channel;
+        private final ChannelRowWriter rows;
+        private final CSVFormatter<T> formatter;
+        private final StringBuilder row = new StringBuilder(128);
+
+        private RowWriter(FileChannel channel, CSVFormatter<T> formatter) {
+            this.channel = channel;
+            this.rows = new ChannelRowWriter(channel);
+            this.formatter = formatter;
+        }
+
+        public void write(T object) {
+            row.setLength(0);
+            formatter.format(object, row);
+            try {
+                rows.writeLine(row);
+            } catch (IOException e) {
+                writeErrorLog(MessageKeys.FILE_ERROR, "IOException while writing file: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+
+        @Override
+        public void close() {
+            try (channel) {
+                rows.close();
+            } catch (IOException e) {
+                writeErrorLog(MessageKeys.FILE_ERROR, "IOException while writing file: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+    }
+
+    /**
+     * Records the rows under {@code changedKeys} in the change log beside the output file instead of rewriting it.
+     * {@code current} is the whole dataset keyed by the value of column {@code keyColumn}, and {@code changedKeys}
+     * every key changed since the dataset identified by {@code baseVersion} was loaded. The file is rewritten in
+     * full, and the log restarted, when the log does not belong to that dataset or would grow past the compaction
+     * threshold.
+     */
+    public void writeChanges(String fileName, String header, Map<String, T> current, Set<String> changedKeys,
+                             CSVFormatter<T> formatter, int keyColumn, long baseVersion) {
+        ChangeJournal journal = new ChangeJournal(Paths.get(folderPath, fileName));
+        try {
+            ChangeJournal.State state = journal.readState();
+            if (state != null && state.baseVersion() == baseVersion && state.keyColumn() == keyColumn) {
+                Set<String> keys = new LinkedHashSet<>(state.touchedKeys());
+                keys.addAll(changedKeys);
+                if (state.entryCount() + keys.size() <= Math.max(MIN_COMPACTION_ENTRIES, current.size() / COMPACTION_RATIO)) {
+                    appendChanges(journal, keys, current, formatter);
+                    return;
+                }
+            }
+            writeFile(fileName, new ArrayList<>(current.values()), formatter, header);
+            journal.reset(baseVersion, keyColumn, changedKeys);
+        } catch (IOException e) {
+            writeErrorLog(MessageKeys.FILE_ERROR, "IOException while writing changes: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private void appendChanges(ChangeJournal journal, Set<String> keys, Map<String, T> current, CSVFormatter<T> formatter) throws IOException {
+        try (BufferedWriter writer = journal.append()) {
+            StringBuilder row = new StringBuilder(128);
+            for (String key : keys) {
+                T object = current.get(key);
+                if (object == null) {
+                    ChangeJournal.writeDelete(writer, key);
+                } else {
+                    row.setLength(0);
+                    formatter.format(object, row);
+                    ChangeJournal.writeUpsert(writer, row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads an output file with its change log applied, header row first.
+     */
+    public List<String[]> readWithChanges(String fileName, int keyColumn) {
+        List<String[]> base = readFile(fileName);
+        if (base.isEmpty()) {
+            return base;
+        }
+        Map<String, String[]> rowsByKey = new LinkedHashMap<>();
+        for (String[] row : base.subList(1, base.size())) {
+            rowsByKey.put(row[keyColumn], row);
+        }
+        try {
+            new ChangeJournal(Paths.get(folderPath, fileName)).applyTo(rowsByKey);
+        } catch (IOException e) {
+            writeErrorLog(MessageKeys.FILE_ERROR, "IOException while reading changes: " + e.getMessage());
+            System.exit(1);
+        }
+        List<String[]> data = new ArrayList<>(rowsByKey.size() + 1);
+        data.add(base.get(0));
+        data.addAll(rowsByKey.values());
+        return data;
+    }
+
+    /**
+     * Folds the change log into the output file, so the file alone holds the current rows. The keys the log touched
+     * stay marked as changed since its dataset was loaded, which later {@link #writeChanges} calls rely on. Does
+     * nothing when the file has no current log or the log has no entries.
+     */
+    public void compactChanges(String fileName) {
+        ChangeJournal journal = new ChangeJournal(Paths.get(folderPath, fileName));
+        try {
+            ChangeJournal.State state = journal.readState();
+            if (state == null || state.entryCount() == 0) {
+                return;
+            }
+            List<String[]> rows = readWithChanges(fileName, state.keyColumn());
+            try (FileChannel channel = FileChannel.open(Paths.get(folderPath, fileName), StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+                 ChannelRowWriter writer = new ChannelRowWriter(channel)) {
+                for (String[] row : rows) {
+                    writer.writeLine(String.join(MessageKeys.CHARACTER, row));
+                }
+            }
+            journal.reset(state.baseVersion(), state.keyColumn(), state.touchedKeys());
+        } catch (IOException e) {
+            writeErrorLog(MessageKeys.FILE_ERROR, "IOException while compacting changes: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Cheap identity of the current source files, from their sizes and modification times.
+     */
+    public long sourceFingerprint(List<String> sourceFiles) {
+        long fingerprint = 17;
+        for (String sourceFile : sourceFiles) {
+            File file = Paths.get(folderPath, sourceFile).toFile();
+            fingerprint = fingerprint * 31 + file.length();
+            fingerprint = fingerprint * 31 + file.lastModified();
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Returns the dataset stored in a snapshot, or {@code null} when the snapshot is missing, unreadable or was
+     * taken from source files that have changed since.
+     */
+    public <R> R readSnapshot(String snapshotName, List<String> sourceFiles, SnapshotReader<R> reader) {
+        try {
+            return new SnapshotFile(Paths.get(folderPath), snapshotName, sourceFiles).read(reader);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    public void writeSnapshot(String snapshotName, List<String> sourceFiles, SnapshotWriter writer) {
+        try {
+            new SnapshotFile(Paths.get(folderPath), snapshotName, sourceFiles).write(writer);
+        } catch (IOException e) {
+            System.out.println("Failed to write snapshot " + snapshotName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Queues the message for the shared writer of the log file; call {@link #closeErrorLogs()} before exiting
+     * to make sure everything queued is on disk.
+     */
     public void writeErrorLog(String errorLogPath, String message) {
-        String logFilePath = Paths.get(folderPath, errorLogPath).toString();
-        File logFile = new File(logFilePath);
+        ErrorLogWriter.forFile(Paths.get(folderPath, errorLogPath)).write(message);
+    }
 
+    /**
+     * Queues the messages in order as one batch; see {@link #writeErrorLog}.
+     */
+    public void writeErrorLogs(String errorLogPath, List<String> messages) {
+        ErrorLogWriter.forFile(Paths.get(folderPath, errorLogPath)).writeAll(messages);
+    }
 
-        File parentDir = logFile.getParentFile();
-        if (parentDir != null && !parentDir.exists()) {
-            parentDir.mkdirs();
+    /**
+     * Creates a fresh folder under the spill folder for the sorted runs of one external load.
+     */
+    public Path createSpillFolder() {
+        try {
+            Path spillRoot = Files.createDirectories(Paths.get(folderPath, MessageKeys.FOLDER_SPILL));
+            return Files.createTempDirectory(spillRoot, "load");
+        } catch (IOException e) {
+            writeErrorLog(MessageKeys.FILE_ERROR, "IOException while creating spill folder: " + e.getMessage());
+            System.exit(1);
+            return null;
         }
+    }
 
-        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(logFile, true), StandardCharsets.UTF_8))) {
-            bw.write(message);
-            bw.newLine();
+    /**
+     * Deletes a folder made by {@link #createSpillFolder()} with whatever runs are left in it.
+     */
+    public void deleteSpillFolder(Path spillFolder) {
+        try (Stream<Path> files = Files.list(spillFolder)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(spillFolder);
         } catch (IOException e) {
-            System.out.println("Failed to write error log: " + e.getMessage());
+            writeErrorLog(MessageKeys.FILE_ERROR, "IOException while deleting spill folder: " + e.getMessage());
         }
     }
+
+    public static void flushErrorLogs() {
+        ErrorLogWriter.flushAll();
+    }
+
+    public static void closeErrorLogs() {
+        ErrorLogWriter.closeAll();
+    }
 }
@@ -0,0 +1,125 @@
+package org.mock.common;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Hands out IDs such as {@code ORD0005000} from a counter, so a new ID never has to be checked against the
+ * existing ones. Numbers are reserved in blocks: the end of a block is written to the sequence file before any
+ * number in it is used, and a restarted allocator continues from there. Numbers left in a block when the process
+ * stops are skipped. No number is handed out while the sequence file cannot be read or the block written to it.
+ * Safe for concurrent use.
+ */
+public class IdAllocator {
+    private final Path sequenceFile;
+    private final String prefix;
+    private final int digits;
+    private final long maxNumber;
+    private final int blockSize;
+    private long next = 1;
+    private long blockEnd;
+    private boolean sequenceRead;
+
+    public IdAllocator(Path sequenceFile, String prefix, int digits, int blockSize) {
+        this.sequenceFile = sequenceFile;
+        this.prefix = prefix;
+        this.digits = digits;
+        this.maxNumber = (long) Math.pow(10, digits) - 1;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * @throws IllegalStateException when every number with this many digits has been handed out, or when the
+     *                               sequence file cannot be read or written; a later call tries the file again
+     */
+    public synchronized String nextId() {
+        if (next >= blockEnd) {
+            reserveBlock();
+        }
+        return format(next++);
+    }
+
+    /**
+     * Makes sure none of the given IDs is handed out later, for IDs that were created outside the allocator.
+     */
+    public void skipPast(Iterable<String> ids) {
+        long highest = 0;
+        for (String id : ids) {
+            highest = Math.max(highest, parseNumber(id));
+        }
+        skipPast(highest);
+    }
+
+    private synchronized void skipPast(long number) {
+        next = Math.max(next, number + 1);
+    }
+
+    /**
+     * Returns the number in an ID of this allocator's shape, or 0 for any other ID.
+     */
+    private long parseNumber(String id) {
+        if (id == null || id.length() != prefix.length() + digits || !id.startsWith(prefix)) {
+            return 0;
+        }
+        long number = 0;
+        for (int i = prefix.length(); i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return 0;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+
+    private void reserveBlock() {
+        readSequence();
+        if (next > maxNumber) {
+            throw new IllegalStateException("No IDs left after " + format(maxNumber));
+        }
+        long reservedEnd = Math.min(next + blockSize, maxNumber + 1);
+        writeSequence(reservedEnd);
+        blockEnd = reservedEnd;
+    }
+
+    private void readSequence() {
+        if (sequenceRead) {
+            return;
+        }
+        if (Files.isRegularFile(sequenceFile)) {
+            try {
+                next = Math.max(next, Long.parseLong(Files.readString(sequenceFile, StandardCharsets.UTF_8).trim()));
+            } catch (IOException | NumberFormatException e) {
+                throw new IllegalStateException("Failed to read ID sequence " + sequenceFile + ": " + e.getMessage(), e);
+            }
+        }
+        sequenceRead = true;
+    }
+
+    /**
+     * Writes to a temporary file and moves it into place, so a crash never leaves a truncated sequence behind.
+     */
+    private void writeSequence(long reservedEnd) {
+        try {
+            Files.createDirectories(sequenceFile.getParent());
+            Path tempFile = sequenceFile.resolveSibling(sequenceFile.getFileName() + ".tmp");
+            Files.writeString(tempFile, Long.toString(reservedEnd), StandardCharsets.UTF_8);
+            Files.move(tempFile, sequenceFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write ID sequence " + sequenceFile + ": " + e.getMessage(), e);
+        }
+    }
+
+    private String format(long number) {
+        char[] id = new char[prefix.length() + digits];
+        prefix.getChars(0, prefix.length(), id, 0);
+        for (int i = id.length - 1; i >= prefix.length(); i--) {
+            id[i] = (char) ('0' + number % 10);
+            number /= 10;
+        }
+        return new String(id);
+    }
+}
@@ -0,0 +1,217 @@
+package org.mock.common;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Hand-written codec for order timestamps of the form {@code 2024-05-13T10:17:08.055107+07:07}: four digit year,
+ * seconds with a 1-9 digit fraction and a {@code ±HH:MM} offset. {@link #parse} checks the shape and the field
+ * ranges and decodes the timestamp into epoch seconds, nanos and a cached {@link ZoneOffset} in one pass over the
+ * characters; {@link #append} renders it back exactly as {@link OffsetDateTime#toString()} does. An instance holds
+ * the last decoded value and is not thread-safe.
+ */
+public class IsoDateTimeCodec {
+    private static final int MIN_LENGTH = 27;
+    private static final int MAX_LENGTH = 35;
+    private static final int SECONDS_PER_DAY = 86_400;
+    private static final int MAX_OFFSET_SECONDS = 18 * 3600;
+    private static final int[] NANO_SCALE = {0, 100_000_000, 10_000_000, 1_000_000, 100_000, 10_000, 1_000, 100, 10, 1};
+    private static final ZoneOffset[] OFFSETS_BY_MINUTE = new ZoneOffset[2 * MAX_OFFSET_SECONDS / 60 + 1];
+
+    private long epochSecond;
+    private int nano;
+    private ZoneOffset offset;
+
+    /**
+     * Decodes the timestamp; returns {@code false}, leaving the previous value in place, when the text does not
+     * have the expected shape or a field is out of range.
+     */
+    public boolean parse(CharSequence s) {
+        int length = s.length();
+        if (length < MIN_LENGTH || length > MAX_LENGTH) {
+            return false;
+        }
+        int year = digits(s, 0, 4);
+        int month = digits(s, 5, 7);
+        int day = digits(s, 8, 10);
+        int hour = digits(s, 11, 13);
+        int minute = digits(s, 14, 16);
+        int second = digits(s, 17, 19);
+        // digits() is -1 for a field that is not all digits, which makes the text malformed
+        if ((year | month | day | hour | minute | second) < 0
+                || s.charAt(4) != '-' || s.charAt(7) != '-' || s.charAt(10) != 'T' || s.charAt(13) != ':'
+                || s.charAt(16) != ':' || s.charAt(19) != '.') {
+            return false;
+        }
+        int i = 20;
+        int fraction = 0;
+        while (i < length && i < 29 && isDigit(s.charAt(i))) {
+            fraction = fraction * 10 + (s.charAt(i) - '0');
+            i++;
+        }
+        int fractionDigits = i - 20;
+        if (fractionDigits == 0 || i + 6 != length) {
+            return false;
+        }
+        char sign = s.charAt(i);
+        int offsetHours = digits(s, i + 1, i + 3);
+        int offsetMinutes = digits(s, i + 4, i + 6);
+        if ((offsetHours | offsetMinutes) < 0 || (sign != '+' && sign != '-') || s.charAt(i + 3) != ':') {
+            return false;
+        }
+        if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)
+                || hour > 23 || minute > 59 || second > 59 || offsetMinutes > 59) {
+            return false;
+        }
+        int offsetSeconds = offsetHours * 3600 + offsetMinutes * 60;
+        if (offsetSeconds > MAX_OFFSET_SECONDS) {
+            return false;
+        }
+        if (sign == '-') {
+            offsetSeconds = -offsetSeconds;
+        }
+        long secondOfDay = hour * 3600L + minute * 60L + second;
+        epochSecond = daysFromCivil(year, month, day) * SECONDS_PER_DAY + secondOfDay - offsetSeconds;
+        nano = fraction * NANO_SCALE[fractionDigits];
+        offset = offset(offsetSeconds);
+        return true;
+    }
+
+    public long epochSecond() {
+        return epochSecond;
+    }
+
+    public int nano() {
+        return nano;
+    }
+
+    public ZoneOffset offset() {
+        return offset;
+    }
+
+    /**
+     * Same check as {@link #parse} without keeping the result.
+     */
+    public static boolean isValid(CharSequence s) {
+        return new IsoDateTimeCodec().parse(s);
+    }
+
+    /**
+     * Returns the offset with the given total seconds; whole-minute offsets are cached.
+     */
+    public static ZoneOffset offset(int totalSeconds) {
+        if (totalSeconds % 60 != 0 || Math.abs(totalSeconds) > MAX_OFFSET_SECONDS) {
+            return ZoneOffset.ofTotalSeconds(totalSeconds);
+        }
+        int index = (totalSeconds + MAX_OFFSET_SECONDS) / 60;
+        ZoneOffset offset = OFFSETS_BY_MINUTE[index];
+        if (offset == null) {
+            offset = ZoneOffset.ofTotalSeconds(totalSeconds);
+            OFFSETS_BY_MINUTE[index] = offset;
+        }
+        return offset;
+    }
+
+    /**
+     * Appends the timestamp as {@link OffsetDateTime#toString()} would: seconds are left out when they and the
+     * fraction are zero, and the fraction is printed in groups of three digits.
+     */
+    public static void append(StringBuilder out, long epochSecond, int nano, ZoneOffset offset) {
+        long localSecond = epochSecond + offset.getTotalSeconds();
+        long epochDay = Math.floorDiv(localSecond, SECONDS_PER_DAY);
+        int secondOfDay = Math.floorMod(localSecond, SECONDS_PER_DAY);
+        long civil = civilFromDays(epochDay);
+        long year = civil >> 9;
+        if (year < 0 || year > 9999) {
+            out.append(OffsetDateTime.ofInstant(Instant.ofEpochSecond(epochSecond, nano), offset));
+            return;
+        }
+        appendPadded(out, (int) year, 4);
+        out.append('-');
+        appendPadded(out, (int) (civil >> 5) & 0xF, 2);
+        out.append('-');
+        appendPadded(out, (int) civil & 0x1F, 2);
+        out.append('T');
+        appendPadded(out, secondOfDay / 3600, 2);
+        out.append(':');
+        appendPadded(out, secondOfDay / 60 % 60, 2);
+        int second = secondOfDay % 60;
+        if (second > 0 || nano > 0) {
+            out.append(':');
+            appendPadded(out, second, 2);
+            if (nano > 0) {
+                out.append('.');
+                if (nano % 1_000_000 == 0) {
+                    appendPadded(out, nano / 1_000_000, 3);
+                } else if (nano % 1_000 == 0) {
+                    appendPadded(out, nano / 1_000, 6);
+                } else {
+                    appendPadded(out, nano, 9);
+                }
+            }
+        }
+        out.append(offset.getId());
+    }
+
+    private static void appendPadded(StringBuilder out, int value, int width) {
+        for (int limit = 10, i = 1; i < width; i++, limit *= 10) {
+            if (value < limit) {
+                out.append('0');
+            }
+        }
+        out.append(value);
+    }
+
+    private static int digits(CharSequence s, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        if (month == 2) {
+            boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            return leap ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    /**
+     * Days from 1970-01-01 to the given proleptic Gregorian date.
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097 + dayOfEra - 719_468;
+    }
+
+    /**
+     * Inverse of {@link #daysFromCivil}, packed as {@code year << 9 | month << 5 | day}.
+     */
+    private static long civilFromDays(long epochDay) {
+        long z = epochDay + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long dayOfEra = z - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year << 9 | month << 5 | day;
+    }
+}
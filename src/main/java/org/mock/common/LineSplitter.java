@@ -0,0 +1,54 @@
+package org.mock.common;
+
+import org.mock.util.MessageKeys;
+
+/**
+ * Cuts raw UTF-8 bytes into lines and hands every non-blank line to a {@link RowHandler}, numbering the lines
+ * from the given start. Both {@code \n} and {@code \r} end a line; the empty line between {@code \r\n} is blank
+ * and therefore skipped.
+ */
+class LineSplitter {
+    private final CSVTokenizer tokenizer = new CSVTokenizer(MessageKeys.CHARACTER.charAt(0));
+    private final RowHandler handler;
+    private int lineNumber;
+
+    LineSplitter(RowHandler handler, int firstLineNumber) {
+        this.handler = handler;
+        this.lineNumber = firstLineNumber;
+    }
+
+    /**
+     * Emits every complete line in {@code buffer[from, to)} and returns the start of the trailing partial line.
+     */
+    int split(byte[] buffer, int from, int to) {
+        int lineStart = from;
+        for (int i = from; i < to; i++) {
+            byte b = buffer[i];
+            if (b == '\n' || b == '\r') {
+                emit(buffer, lineStart, i);
+                lineStart = i + 1;
+            }
+        }
+        return lineStart;
+    }
+
+    /**
+     * Emits {@code buffer[from, to)} as the last line of the input.
+     */
+    void finish(byte[] buffer, int from, int to) {
+        if (to > from) {
+            emit(buffer, from, to);
+        }
+    }
+
+    static boolean isLineBreak(byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    private void emit(byte[] buffer, int from, int to) {
+        tokenizer.reset(buffer, from, to - from);
+        if (!tokenizer.isBlank()) {
+            handler.handle(tokenizer.toArray(), lineNumber++);
+        }
+    }
+}
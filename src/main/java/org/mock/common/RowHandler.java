@@ -0,0 +1,6 @@
+package org.mock.common;
+
+@FunctionalInterface
+public interface RowHandler {
+    void handle(String[] values, int lineNumber);
+}
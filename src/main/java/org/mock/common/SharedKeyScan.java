@@ -0,0 +1,92 @@
+package org.mock.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Finds the rows of a file that share a key with another row, without holding the keys in memory. Each row adds
+ * its keys with the row's line number and a key kind (such as ID or email, up to {@link #MAX_KINDS}); the keys
+ * are sorted on disk, and the rows of every key that occurs more than once are sorted again by line. A second,
+ * row-by-row pass then asks for each line which of its keys are shared: every other key is unique in the file,
+ * so a duplicate check only has to remember the shared ones.
+ */
+public class SharedKeyScan implements Closeable {
+    public static final int MAX_KINDS = 8;
+    private static final int KIND_BITS = 3;
+    private static final String NO_KEY = "";
+
+    private final ExternalSorter keys;
+    private final ExternalSorter sharedLines;
+    private ExternalSorter.Cursor cursor;
+    private boolean pending;
+
+    public SharedKeyScan(Path spillFolder, int maxBufferedRecords) {
+        this.keys = new ExternalSorter(spillFolder, maxBufferedRecords);
+        this.sharedLines = new ExternalSorter(spillFolder, maxBufferedRecords);
+    }
+
+    public void add(int kind, String key, int lineNumber) throws IOException {
+        if (kind < 0 || kind >= MAX_KINDS) {
+            throw new IllegalArgumentException("Key kind out of range: " + kind);
+        }
+        keys.add(key, ((long) kind << Integer.SIZE) | lineNumber);
+    }
+
+    /**
+     * Ends the keys and sorts the rows with shared keys by line, ready for {@link #sharedKinds(int)}.
+     */
+    public void finish() throws IOException {
+        ExternalSorter.Cursor sorted = keys.sorted();
+        String groupKey = null;
+        long groupKind = -1;
+        int firstLine = -1;
+        boolean shared = false;
+        while (sorted.next()) {
+            long kind = sorted.value() >>> Integer.SIZE;
+            int lineNumber = (int) sorted.value();
+            if (kind == groupKind && sorted.key().equals(groupKey)) {
+                if (!shared) {
+                    addSharedLine(firstLine, kind);
+                    shared = true;
+                }
+                addSharedLine(lineNumber, kind);
+            } else {
+                groupKey = sorted.key();
+                groupKind = kind;
+                firstLine = lineNumber;
+                shared = false;
+            }
+        }
+        keys.close();
+        cursor = sharedLines.sorted();
+        pending = cursor.next();
+    }
+
+    /**
+     * Returns a bit per key kind that the row shares with another row. Lines must be asked for in ascending order.
+     */
+    public int sharedKinds(int lineNumber) throws IOException {
+        int kinds = 0;
+        while (pending && cursor.value() >>> KIND_BITS <= lineNumber) {
+            if (cursor.value() >>> KIND_BITS == lineNumber) {
+                kinds |= 1 << (int) (cursor.value() & (MAX_KINDS - 1));
+            }
+            pending = cursor.next();
+        }
+        return kinds;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            keys.close();
+        } finally {
+            sharedLines.close();
+        }
+    }
+
+    private void addSharedLine(int lineNumber, long kind) throws IOException {
+        sharedLines.add(NO_KEY, ((long) lineNumber << KIND_BITS) | kind);
+    }
+}
@@ -0,0 +1,115 @@
+package org.mock.common;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary snapshot of a loaded dataset. The header records the size and modification time of every source file the
+ * dataset was built from; a snapshot is only handed out while all of them are unchanged. A source modified shortly
+ * before the snapshot was written could change again without its timestamp moving, so for such a source the header
+ * also records a CRC32C of its content, which is checked on every read. Other sources are never read again. The
+ * payload is written by the owning service and closed by a trailer so that a truncated file is never accepted.
+ */
+class SnapshotFile {
+    private static final int MAGIC = 0x434E5350;
+    private static final int FORMAT_VERSION = 4;
+    private static final int TRAILER = 0x454E4421;
+    private static final int HASH_BUFFER_SIZE = 256 * 1024;
+    // wider than the coarsest timestamp resolution of common file systems
+    private static final long RACY_WINDOW_MILLIS = 2_000;
+
+    private final Path snapshotPath;
+    private final Path folder;
+    private final List<String> sourceFiles;
+
+    SnapshotFile(Path folder, String snapshotName, List<String> sourceFiles) {
+        this.folder = folder;
+        this.snapshotPath = folder.resolve(snapshotName);
+        this.sourceFiles = sourceFiles;
+    }
+
+    /**
+     * Returns the decoded payload, or {@code null} when there is no snapshot or it no longer matches its sources.
+     */
+    <R> R read(SnapshotReader<R> reader) throws IOException {
+        if (!Files.isRegularFile(snapshotPath)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath), HASH_BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readInt() != sourceFiles.size()) {
+                return null;
+            }
+            for (String sourceFile : sourceFiles) {
+                Path source = folder.resolve(sourceFile);
+                if (!in.readUTF().equals(sourceFile)
+                        || !Files.isRegularFile(source)
+                        || in.readLong() != Files.size(source)
+                        || in.readLong() != Files.getLastModifiedTime(source).toMillis()
+                        || in.readBoolean() && in.readLong() != hash(source)) {
+                    return null;
+                }
+            }
+            R result = reader.read(in);
+            return in.readInt() == TRAILER ? result : null;
+        }
+    }
+
+    /**
+     * Writes the snapshot to a temporary file and moves it into place, so readers never see a partial snapshot.
+     * Nothing is written when a source file is missing.
+     */
+    void write(SnapshotWriter writer) throws IOException {
+        for (String sourceFile : sourceFiles) {
+            if (!Files.isRegularFile(folder.resolve(sourceFile))) {
+                return;
+            }
+        }
+        Files.createDirectories(snapshotPath.getParent());
+        long writtenAt = System.currentTimeMillis();
+        Path tempPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath), HASH_BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(sourceFiles.size());
+            for (String sourceFile : sourceFiles) {
+                Path source = folder.resolve(sourceFile);
+                long modified = Files.getLastModifiedTime(source).toMillis();
+                boolean racy = modified > writtenAt - RACY_WINDOW_MILLIS;
+                out.writeUTF(sourceFile);
+                out.writeLong(Files.size(source));
+                out.writeLong(modified);
+                out.writeBoolean(racy);
+                if (racy) {
+                    out.writeLong(hash(source));
+                }
+            }
+            writer.write(out);
+            out.writeInt(TRAILER);
+        }
+        Files.move(tempPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long hash(Path source) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(HASH_BUFFER_SIZE);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,9 @@
+package org.mock.common;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+
+@FunctionalInterface
+public interface SnapshotReader<R> {
+    R read(DataInputStream in) throws IOException;
+}
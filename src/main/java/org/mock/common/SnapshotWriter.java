@@ -0,0 +1,9 @@
+package org.mock.common;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+@FunctionalInterface
+public interface SnapshotWriter {
+    void write(DataOutputStream out) throws IOException;
+}
@@ -0,0 +1,32 @@
+package org.mock.enums;
+
+/**
+ * What deleting a product or customer does with the loaded orders that still reference it.
+ */
+public enum DeletePolicyEnum {
+    /**
+     * Orders are not looked at, so none need to be loaded; the delete goes ahead and leaves any orders that
+     * reference the product or customer as they are.
+     */
+    IGNORE,
+    /**
+     * The delete is refused and logged as an error; the orders are kept.
+     */
+    BLOCK,
+    /**
+     * The orders are deleted together with the product or customer.
+     */
+    CASCADE;
+
+    /**
+     * Returns the policy named by {@code name}, ignoring case, or {@code null} when there is none.
+     */
+    public static DeletePolicyEnum fromName(String name) {
+        for (DeletePolicyEnum policy : values()) {
+            if (policy.name().equalsIgnoreCase(name)) {
+                return policy;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,68 @@
+package org.mock.enums;
+
+/**
+ * The function codes accepted on the command line, with the datasets each one needs loaded before it runs.
+ */
+public enum FunctionEnum {
+    LOAD_ALL("1", LoadModeEnum.VALIDATED, LoadModeEnum.VALIDATED, LoadModeEnum.VALIDATED, false),
+    ADD_PRODUCTS("2.1", LoadModeEnum.FULL, LoadModeEnum.NONE, LoadModeEnum.NONE, false),
+    UPDATE_PRODUCTS("2.2", LoadModeEnum.FULL, LoadModeEnum.NONE, LoadModeEnum.NONE, false),
+    DELETE_PRODUCTS("2.3", LoadModeEnum.FULL, LoadModeEnum.NONE, LoadModeEnum.NONE, false),
+    ADD_CUSTOMERS("3.1", LoadModeEnum.NONE, LoadModeEnum.FULL, LoadModeEnum.NONE, false),
+    UPDATE_CUSTOMERS("3.2", LoadModeEnum.NONE, LoadModeEnum.FULL, LoadModeEnum.NONE, false),
+    DELETE_CUSTOMERS("3.3", LoadModeEnum.NONE, LoadModeEnum.FULL, LoadModeEnum.NONE, false),
+    ADD_ORDERS("4.1", LoadModeEnum.FULL, LoadModeEnum.IDS_ONLY, LoadModeEnum.FULL, false),
+    UPDATE_ORDERS("4.2", LoadModeEnum.FULL, LoadModeEnum.IDS_ONLY, LoadModeEnum.FULL, false),
+    DELETE_ORDERS("4.3", LoadModeEnum.FULL, LoadModeEnum.NONE, LoadModeEnum.FULL, false),
+    SEARCH_TOP_PRODUCTS("5.1", LoadModeEnum.FULL, LoadModeEnum.NONE, LoadModeEnum.FULL, true),
+    SEARCH_ORDERS_BY_PRODUCT_ID("5.2", LoadModeEnum.FULL, LoadModeEnum.NONE, LoadModeEnum.FULL, true);
+
+    private final String code;
+    private final LoadModeEnum productLoad;
+    private final LoadModeEnum customerLoad;
+    private final LoadModeEnum orderLoad;
+    private final boolean readOnly;
+
+    FunctionEnum(String code, LoadModeEnum productLoad, LoadModeEnum customerLoad, LoadModeEnum orderLoad, boolean readOnly) {
+        this.code = code;
+        this.productLoad = productLoad;
+        this.customerLoad = customerLoad;
+        this.orderLoad = orderLoad;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Returns the function with the given code, or {@code null} when there is none.
+     */
+    public static FunctionEnum fromCode(String code) {
+        for (FunctionEnum function : values()) {
+            if (function.code.equals(code)) {
+                return function;
+            }
+        }
+        return null;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public LoadModeEnum getProductLoad() {
+        return productLoad;
+    }
+
+    public LoadModeEnum getCustomerLoad() {
+        return customerLoad;
+    }
+
+    public LoadModeEnum getOrderLoad() {
+        return orderLoad;
+    }
+
+    /**
+     * Whether the function only reads the loaded datasets.
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+}
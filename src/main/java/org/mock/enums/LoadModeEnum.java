@@ -0,0 +1,16 @@
+package org.mock.enums;
+
+/**
+ * How much of a dataset a function code needs, from least to most. A dataset already loaded in a later mode
+ * also satisfies the earlier ones, except that {@link #VALIDATED} always reloads and validates the origin file.
+ */
+public enum LoadModeEnum {
+    NONE,
+    IDS_ONLY,
+    FULL,
+    VALIDATED;
+
+    public boolean isSatisfiedBy(LoadModeEnum loaded) {
+        return this == NONE || (this != VALIDATED && loaded.ordinal() >= ordinal());
+    }
+}
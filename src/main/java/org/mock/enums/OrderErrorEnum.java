@@ -0,0 +1,29 @@
+package org.mock.enums;
+
+/**
+ * Reasons an order row is rejected, with the message written to the error log. Messages ending in a space are
+ * followed by the offending value.
+ */
+public enum OrderErrorEnum {
+    INVALID_DATA_LENGTH("Invalid data length"),
+    EMPTY_ID("Order ID cannot be empty."),
+    ID_NOT_FOUND("Order ID does not exist for update: "),
+    DUPLICATE_ID("Order ID already exists: "),
+    CUSTOMER_NOT_FOUND("Customer ID does not exist: "),
+    EMPTY_PRODUCT_QUANTITIES("Invalid product quantities."),
+    INVALID_PRODUCT_ID("Invalid product ID: "),
+    INVALID_QUANTITY("Product quantity must be greater than 0."),
+    INVALID_STOCK("Invalid stock for product ID: "),
+    STOCK_EXCEEDED("Ordered quantity exceeds available stock for product ID: "),
+    INVALID_ORDER_DATE("Invalid Order Date format: "),
+    INVALID_NUMBER("");
+    private final String message;
+
+    OrderErrorEnum(String message) {
+        this.message = message;
+    }
+
+    public String getMessage(String detail) {
+        return detail == null ? message : message + detail;
+    }
+}
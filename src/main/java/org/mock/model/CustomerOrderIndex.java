@@ -0,0 +1,50 @@
+package org.mock.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index from customer ID to the IDs of that customer's orders. Like {@link ProductOrderIndex}, the owner keeps it
+ * in step with its orders; it is not thread-safe, but concurrent lookups are fine while nothing changes it.
+ */
+public class CustomerOrderIndex {
+    private final Map<String, Set<String>> orderIdsByCustomerId = new HashMap<>();
+
+    public void clear() {
+        orderIdsByCustomerId.clear();
+    }
+
+    public void addAll(Collection<Order> orders) {
+        for (Order order : orders) {
+            add(order.getId(), order.getCustomerId());
+        }
+    }
+
+    public void add(String orderId, String customerId) {
+        orderIdsByCustomerId.computeIfAbsent(customerId, key -> new HashSet<>()).add(orderId);
+    }
+
+    public void remove(String orderId, String customerId) {
+        Set<String> orderIds = orderIdsByCustomerId.get(customerId);
+        if (orderIds != null && orderIds.remove(orderId) && orderIds.isEmpty()) {
+            orderIdsByCustomerId.remove(customerId);
+        }
+    }
+
+    /**
+     * Returns the IDs of the customer's orders, read-only.
+     */
+    public Set<String> orderIds(String customerId) {
+        Set<String> orderIds = orderIdsByCustomerId.get(customerId);
+        return orderIds == null ? Collections.emptySet() : Collections.unmodifiableSet(orderIds);
+    }
+
+    public int orderCount(String customerId) {
+        Set<String> orderIds = orderIdsByCustomerId.get(customerId);
+        return orderIds == null ? 0 : orderIds.size();
+    }
+}
@@ -0,0 +1,405 @@
+package org.mock.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Customers held once in slot order, with a unique index on phone number (the primary key) and on customer ID
+ * and email. Each index is an open-addressing table of slot numbers that compares against the customer's own
+ * field, so no key string is stored twice and there are no per-entry objects. Every method runs under the
+ * store's read or write lock, so a change to several keys of a customer is seen whole or not at all, while
+ * lookups from parallel validation do not wait for each other.
+ * <p>
+ * Customers are changed through the store only; setting a key field on a stored customer directly leaves it
+ * filed under the old key. Customers without a phone number (as kept by an ID-only load) are only indexed by ID.
+ */
+public class CustomerStore {
+    private Customer[] customers = new Customer[16];
+    private int slotCount;
+    private int size;
+    private final KeyIndex phoneIndex = new KeyIndex(Customer::getPhoneNumber);
+    private final KeyIndex idIndex = new KeyIndex(Customer::getId);
+    private final KeyIndex emailIndex = new KeyIndex(Customer::getEmail);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public Customer findByPhone(String phoneNumber) {
+        lock.readLock().lock();
+        try {
+            return customerAt(phoneIndex.find(phoneNumber));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Customer findById(String id) {
+        lock.readLock().lock();
+        try {
+            return customerAt(idIndex.find(id));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Customer findByEmail(String email) {
+        lock.readLock().lock();
+        try {
+            return customerAt(emailIndex.find(email));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean containsPhone(String phoneNumber) {
+        lock.readLock().lock();
+        try {
+            return phoneIndex.find(phoneNumber) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean containsId(String id) {
+        lock.readLock().lock();
+        try {
+            return idIndex.find(id) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean containsEmail(String email) {
+        lock.readLock().lock();
+        try {
+            return emailIndex.find(email) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            Arrays.fill(customers, 0, slotCount, null);
+            slotCount = 0;
+            size = 0;
+            phoneIndex.clear();
+            idIndex.clear();
+            emailIndex.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stores the customer in place of the one with the same phone number, if any. An ID or email already held by
+     * another customer is taken over by this one, so unvalidated data with repeated keys keeps the latest owner.
+     */
+    public void put(Customer customer) {
+        lock.writeLock().lock();
+        try {
+            int slot = phoneIndex.find(customer.getPhoneNumber());
+            if (slot >= 0) {
+                unindex(slot);
+            } else {
+                slot = appendSlot();
+                size++;
+            }
+            customers[slot] = customer;
+            index(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gives the customer with the phone number a new ID, name and email in one step. Fails with nothing changed
+     * when the ID or email belongs to another customer; returns false when no customer has the phone number.
+     */
+    public boolean update(String phoneNumber, String id, String name, String email) {
+        lock.writeLock().lock();
+        try {
+            int slot = phoneIndex.find(phoneNumber);
+            if (slot < 0) {
+                return false;
+            }
+            int idOwner = idIndex.find(id);
+            if (idOwner >= 0 && idOwner != slot) {
+                throw new IllegalArgumentException("ID " + id + " already exists.");
+            }
+            int emailOwner = emailIndex.find(email);
+            if (emailOwner >= 0 && emailOwner != slot) {
+                throw new IllegalArgumentException("Email " + email + " already exists.");
+            }
+            Customer customer = customers[slot];
+            idIndex.remove(customer.getId(), slot);
+            emailIndex.remove(customer.getEmail(), slot);
+            customer.setId(id);
+            customer.setName(name);
+            customer.setEmail(email);
+            idIndex.put(id, slot);
+            emailIndex.put(email, slot);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the customer with the phone number and returns it, or null when there is none.
+     */
+    public Customer removeByPhone(String phoneNumber) {
+        lock.writeLock().lock();
+        try {
+            int slot = phoneIndex.find(phoneNumber);
+            if (slot < 0) {
+                return null;
+            }
+            Customer customer = customers[slot];
+            unindex(slot);
+            customers[slot] = null;
+            size--;
+            return customer;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the customers in the order they were first stored.
+     */
+    public List<Customer> values() {
+        lock.readLock().lock();
+        try {
+            List<Customer> values = new ArrayList<>(size);
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (customers[slot] != null) {
+                    values.add(customers[slot]);
+                }
+            }
+            return values;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Passes every customer ID to {@code action} in slot order, all under one read lock.
+     */
+    public void forEachId(Consumer<String> action) {
+        lock.readLock().lock();
+        try {
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (customers[slot] != null && customers[slot].getId() != null) {
+                    action.accept(customers[slot].getId());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Read-only view keyed by phone number, for writers that look customers up by their output key.
+     */
+    public Map<String, Customer> byPhoneNumber() {
+        return new AbstractMap<>() {
+            @Override
+            public Customer get(Object key) {
+                return key instanceof String phoneNumber ? findByPhone(phoneNumber) : null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return key instanceof String phoneNumber && containsPhone(phoneNumber);
+            }
+
+            @Override
+            public int size() {
+                return CustomerStore.this.size();
+            }
+
+            @Override
+            public Set<Entry<String, Customer>> entrySet() {
+                List<Customer> values = CustomerStore.this.values();
+                return new AbstractSet<>() {
+                    @Override
+                    public Iterator<Entry<String, Customer>> iterator() {
+                        return values.stream()
+                                .<Entry<String, Customer>>map(customer -> new SimpleImmutableEntry<>(customer.getPhoneNumber(), customer))
+                                .iterator();
+                    }
+
+                    @Override
+                    public int size() {
+                        return values.size();
+                    }
+                };
+            }
+        };
+    }
+
+    private Customer customerAt(int slot) {
+        return slot >= 0 ? customers[slot] : null;
+    }
+
+    private void index(int slot) {
+        Customer customer = customers[slot];
+        phoneIndex.put(customer.getPhoneNumber(), slot);
+        idIndex.put(customer.getId(), slot);
+        emailIndex.put(customer.getEmail(), slot);
+    }
+
+    private void unindex(int slot) {
+        Customer customer = customers[slot];
+        phoneIndex.remove(customer.getPhoneNumber(), slot);
+        idIndex.remove(customer.getId(), slot);
+        emailIndex.remove(customer.getEmail(), slot);
+    }
+
+    private int appendSlot() {
+        if (slotCount == customers.length) {
+            if (size <= slotCount / 2) {
+                compact();
+            } else {
+                customers = Arrays.copyOf(customers, slotCount * 2);
+            }
+        }
+        return slotCount++;
+    }
+
+    // drops the slots of removed customers, keeping the order of the rest, and files everyone under their new slot
+    private void compact() {
+        int live = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (customers[slot] != null) {
+                customers[live++] = customers[slot];
+            }
+        }
+        Arrays.fill(customers, live, slotCount, null);
+        slotCount = live;
+        phoneIndex.clear();
+        idIndex.clear();
+        emailIndex.clear();
+        for (int slot = 0; slot < slotCount; slot++) {
+            index(slot);
+        }
+    }
+
+    /**
+     * Linear-probing table of slot numbers plus one (0 marks a free entry), kept at most half full. Removal shifts
+     * later entries of the probe run back instead of leaving markers behind.
+     */
+    private final class KeyIndex {
+        private final Function<Customer, String> key;
+        private int[] table = new int[32];
+        private int shift = Integer.numberOfLeadingZeros(32) + 1;
+        private int used;
+
+        private KeyIndex(Function<Customer, String> key) {
+            this.key = key;
+        }
+
+        private int find(String value) {
+            if (value == null) {
+                return -1;
+            }
+            int mask = table.length - 1;
+            for (int i = home(value, mask); table[i] != 0; i = (i + 1) & mask) {
+                int slot = table[i] - 1;
+                if (value.equals(key.apply(customers[slot]))) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        private void put(String value, int slot) {
+            if (value == null) {
+                return;
+            }
+            if ((used + 1) * 2 > table.length) {
+                resize(table.length * 2);
+            }
+            int mask = table.length - 1;
+            int i = home(value, mask);
+            for (; table[i] != 0; i = (i + 1) & mask) {
+                if (value.equals(key.apply(customers[table[i] - 1]))) {
+                    table[i] = slot + 1;
+                    return;
+                }
+            }
+            table[i] = slot + 1;
+            used++;
+        }
+
+        private void remove(String value, int slot) {
+            if (value == null) {
+                return;
+            }
+            int mask = table.length - 1;
+            int i = home(value, mask);
+            while (table[i] != slot + 1) {
+                if (table[i] == 0) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            table[i] = 0;
+            used--;
+            for (int next = (i + 1) & mask; table[next] != 0; next = (next + 1) & mask) {
+                int nextHome = home(key.apply(customers[table[next] - 1]), mask);
+                // move the entry into the gap unless its home lies cyclically after the gap, up to its position
+                if (((next - nextHome) & mask) >= ((next - i) & mask)) {
+                    table[i] = table[next];
+                    table[next] = 0;
+                    i = next;
+                }
+            }
+        }
+
+        private void clear() {
+            Arrays.fill(table, 0);
+            used = 0;
+        }
+
+        private void resize(int capacity) {
+            int[] old = table;
+            table = new int[capacity];
+            shift = Integer.numberOfLeadingZeros(capacity) + 1;
+            int mask = capacity - 1;
+            for (int entry : old) {
+                if (entry != 0) {
+                    int i = home(key.apply(customers[entry - 1]), mask);
+                    while (table[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    table[i] = entry;
+                }
+            }
+        }
+
+        // Fibonacci hashing spreads the near-identical hash codes of sequential IDs over the whole table
+        private int home(String value, int mask) {
+            return (value.hashCode() * 0x9E3779B9 >>> shift) & mask;
+        }
+    }
+}
@@ -1,22 +1,26 @@
 package org.mock.model;
 
+import org.mock.util.Money;
+
+import java.time.Instant;
 import java.time.OffsetDateTime;
-import java.util.Collections;
+import java.time.ZoneOffset;
 import java.util.Map;
 
 public class Order {
     private String id;
     private String customerId;
-    private Map<String, Integer> productQuantities;
-    private OffsetDateTime orderDate;
-    private Double totalAmount;
+    private ProductQuantities productQuantities;
+    private long orderEpochSecond;
+    private int orderNano;
+    private ZoneOffset orderOffset;
+    private long totalCents;
 
     public Order(String id, String customerId, Map<String, Integer> productQuantities, OffsetDateTime orderDate) {
         this.id = id;
         this.customerId = customerId;
-        this.productQuantities = productQuantities != null ? productQuantities : Collections.emptyMap();
-        this.orderDate = orderDate;
-        this.totalAmount = 0.0;
+        this.productQuantities = ProductQuantities.copyOf(productQuantities);
+        setOrderDate(orderDate);
     }
 
     public Order(String id, Map<String, Integer> productQuantities) {
@@ -39,27 +43,66 @@ public class Order {
         this.customerId = customerId;
     }
 
-    public Map<String, Integer> getProductQuantities() {
+    /**
+     * Returns the line items; the map is read-only.
+     */
+    public ProductQuantities getProductQuantities() {
         return productQuantities;
     }
 
     public void setProductQuantities(Map<String, Integer> productQuantities) {
-        this.productQuantities = productQuantities != null ? productQuantities : Collections.emptyMap();
+        this.productQuantities = ProductQuantities.copyOf(productQuantities);
     }
 
+    /**
+     * Builds the order date from its compact form; {@code null} when the order has no date.
+     */
     public OffsetDateTime getOrderDate() {
-        return orderDate;
+        if (orderOffset == null) {
+            return null;
+        }
+        return OffsetDateTime.ofInstant(Instant.ofEpochSecond(orderEpochSecond, orderNano), orderOffset);
     }
 
     public void setOrderDate(OffsetDateTime orderDate) {
-        this.orderDate = orderDate;
+        if (orderDate == null) {
+            setOrderDate(0, 0, null);
+        } else {
+            setOrderDate(orderDate.toEpochSecond(), orderDate.getNano(), orderDate.getOffset());
+        }
+    }
+
+    public void setOrderDate(long epochSecond, int nano, ZoneOffset offset) {
+        this.orderEpochSecond = epochSecond;
+        this.orderNano = nano;
+        this.orderOffset = offset;
+    }
+
+    public long getOrderEpochSecond() {
+        return orderEpochSecond;
+    }
+
+    public int getOrderNano() {
+        return orderNano;
+    }
+
+    public ZoneOffset getOrderOffset() {
+        return orderOffset;
+    }
+
+    public long getTotalCents() {
+        return totalCents;
+    }
+
+    public void setTotalCents(long totalCents) {
+        this.totalCents = totalCents;
     }
 
     public Double getTotalAmount() {
-        return totalAmount;
+        return Money.toDouble(totalCents);
     }
 
     public void setTotalAmount(Double totalAmount) {
-        this.totalAmount = totalAmount;
+        this.totalCents = Money.fromDouble(totalAmount);
     }
 }
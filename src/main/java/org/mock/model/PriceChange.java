@@ -0,0 +1,12 @@
+package org.mock.model;
+
+/**
+ * A product whose unit price changed, with the price before and after in cents. Orders listing the product
+ * change their total by {@link #deltaCents()} per unit.
+ */
+public record PriceChange(String productId, long oldPriceCents, long newPriceCents) {
+
+    public long deltaCents() {
+        return Math.subtractExact(newPriceCents, oldPriceCents);
+    }
+}
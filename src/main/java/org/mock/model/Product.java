@@ -1,47 +1,53 @@
 package org.mock.model;
 
-public class Product {
-    private String id;
-    private String name;
-    private Double price;
-    private Integer stockAvailable;
+import org.mock.util.Money;
 
-    public Product(String id, String name, Double price, Integer stockAvailable) {
+/**
+ * A product as published in a {@link ProductCatalog}. Products are immutable, so every catalog version can share
+ * them; a change is published as a new product, such as the copy from {@link #withStock(int)}.
+ */
+public final class Product {
+    private final String id;
+    private final String name;
+    private final long priceCents;
+    private final int stockAvailable;
+
+    public Product(String id, String name, double price, int stockAvailable) {
+        this(id, name, Money.fromDouble(price), stockAvailable);
+    }
+
+    private Product(String id, String name, long priceCents, int stockAvailable) {
         this.id = id;
         this.name = name;
-        this.price = price;
+        this.priceCents = priceCents;
         this.stockAvailable = stockAvailable;
     }
 
-    public String getId() {
-        return id;
+    public static Product ofCents(String id, String name, long priceCents, int stockAvailable) {
+        return new Product(id, name, priceCents, stockAvailable);
     }
 
-    public void setId(String id) {
-        this.id = id;
+    public String getId() {
+        return id;
     }
 
     public String getName() {
         return name;
     }
 
-    public void setName(String name) {
-        this.name = name;
+    public long getPriceCents() {
+        return priceCents;
     }
 
     public Double getPrice() {
-        return price;
+        return Money.toDouble(priceCents);
     }
 
-    public void setPrice(Double price) {
-        this.price = price;
-    }
-
-    public Integer getStockAvailable() {
+    public int getStockAvailable() {
         return stockAvailable;
     }
 
-    public void setStockAvailable(Integer stockAvailable) {
-        this.stockAvailable = stockAvailable;
+    public Product withStock(int stockAvailable) {
+        return new Product(id, name, priceCents, stockAvailable);
     }
 }
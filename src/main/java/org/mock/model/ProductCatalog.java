@@ -0,0 +1,112 @@
+package org.mock.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One published version of the product catalog. Neither the map nor its products change after publication, so
+ * readers share a catalog without locking or copying; a change is published as a new catalog with the next
+ * version, built by {@link #edit()}.
+ */
+public final class ProductCatalog {
+    public static final ProductCatalog EMPTY = new ProductCatalog(0, new HashMap<>());
+
+    private final long version;
+    private final Map<String, Product> products;
+
+    private ProductCatalog(long version, Map<String, Product> products) {
+        this.version = version;
+        this.products = Collections.unmodifiableMap(products);
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public Map<String, Product> products() {
+        return products;
+    }
+
+    public Collection<Product> values() {
+        return products.values();
+    }
+
+    public Product get(String productId) {
+        return products.get(productId);
+    }
+
+    public boolean contains(String productId) {
+        return products.containsKey(productId);
+    }
+
+    public int size() {
+        return products.size();
+    }
+
+    /**
+     * Starts the next version from a private copy of this one.
+     */
+    public Editor edit() {
+        return new Editor(version + 1, new HashMap<>(products));
+    }
+
+    /**
+     * Starts the next version with no products, for a reload.
+     */
+    public Editor replaceAll() {
+        return new Editor(version + 1, new HashMap<>());
+    }
+
+    /**
+     * Working copy of a catalog for a single writer, which builds one catalog from it. Products already published
+     * are replaced, never changed.
+     */
+    public static final class Editor {
+        private final long version;
+        private Map<String, Product> products;
+
+        private Editor(long version, Map<String, Product> products) {
+            this.version = version;
+            this.products = products;
+        }
+
+        public Product get(String productId) {
+            return products.get(productId);
+        }
+
+        public boolean contains(String productId) {
+            return products.containsKey(productId);
+        }
+
+        public void put(Product product) {
+            products.put(product.getId(), product);
+        }
+
+        /**
+         * Takes over the map as the working copy; the caller must not use it afterwards.
+         */
+        public void putAll(Map<String, Product> loaded) {
+            if (products.isEmpty()) {
+                products = loaded;
+            } else {
+                products.putAll(loaded);
+            }
+        }
+
+        public void remove(String productId) {
+            products.remove(productId);
+        }
+
+        public int size() {
+            return products.size();
+        }
+
+        public ProductCatalog build() {
+            ProductCatalog catalog = new ProductCatalog(version, products);
+            products = null;
+            return catalog;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.mock.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary of product IDs. Every distinct ID is stored once and given a dense int code, so order line items
+ * can hold codes instead of their own copies of the ID strings. Codes are never reused or removed.
+ */
+public final class ProductIdTable {
+    private static final ProductIdTable SHARED = new ProductIdTable();
+
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] productIds = new String[1024];
+    private int size;
+
+    public static ProductIdTable shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the code of the product ID, adding it to the table when it is new.
+     */
+    public int codeOf(String productId) {
+        Integer code = codes.get(productId);
+        return code != null ? code : register(productId);
+    }
+
+    /**
+     * Returns the code of the product ID, or -1 when it has never been added.
+     */
+    public int find(Object productId) {
+        if (productId == null) {
+            return -1;
+        }
+        Integer code = codes.get(productId);
+        return code != null ? code : -1;
+    }
+
+    public String productId(int code) {
+        return productIds[code];
+    }
+
+    private synchronized int register(String productId) {
+        Integer code = codes.get(productId);
+        if (code != null) {
+            return code;
+        }
+        if (size == productIds.length) {
+            productIds = Arrays.copyOf(productIds, size * 2);
+        }
+        productIds[size] = productId;
+        codes.put(productId, size);
+        return size++;
+    }
+}
@@ -0,0 +1,156 @@
+package org.mock.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Inverted index from product to the IDs of the orders that list it, with one posting set per product code of
+ * {@link ProductIdTable}; the size of a posting set is the product's order count. The owner keeps it in step with
+ * its orders; it is not thread-safe, but concurrent lookups are fine while nothing changes it.
+ */
+public class ProductOrderIndex {
+    private final List<Set<String>> orderIdsByProductCode = new ArrayList<>();
+
+    public void clear() {
+        orderIdsByProductCode.clear();
+    }
+
+    public void addAll(Collection<Order> orders) {
+        for (Order order : orders) {
+            add(order.getId(), order.getProductQuantities());
+        }
+    }
+
+    public void add(String orderId, ProductQuantities productQuantities) {
+        for (int i = 0; i < productQuantities.size(); i++) {
+            int productCode = productQuantities.productCode(i);
+            while (orderIdsByProductCode.size() <= productCode) {
+                orderIdsByProductCode.add(null);
+            }
+            Set<String> orderIds = orderIdsByProductCode.get(productCode);
+            if (orderIds == null) {
+                orderIds = new HashSet<>();
+                orderIdsByProductCode.set(productCode, orderIds);
+            }
+            orderIds.add(orderId);
+        }
+    }
+
+    public void remove(String orderId, ProductQuantities productQuantities) {
+        for (int i = 0; i < productQuantities.size(); i++) {
+            Set<String> orderIds = postings(productQuantities.productCode(i));
+            if (orderIds != null) {
+                orderIds.remove(orderId);
+            }
+        }
+    }
+
+    /**
+     * Returns the IDs of the orders listing any of the products, each once and in ascending order.
+     */
+    public List<String> orderIdsWithAnyProduct(int[] productCodes) {
+        Set<String> orderIds = new TreeSet<>();
+        for (int productCode : productCodes) {
+            Set<String> postings = postings(productCode);
+            if (postings != null) {
+                orderIds.addAll(postings);
+            }
+        }
+        return new ArrayList<>(orderIds);
+    }
+
+    /**
+     * Returns the IDs of the orders listing the product, read-only; the set follows later changes to the index.
+     */
+    public Set<String> orderIds(int productCode) {
+        Set<String> orderIds = postings(productCode);
+        return orderIds == null ? Collections.emptySet() : Collections.unmodifiableSet(orderIds);
+    }
+
+    public int orderCount(int productCode) {
+        Set<String> orderIds = postings(productCode);
+        return orderIds == null ? 0 : orderIds.size();
+    }
+
+    /**
+     * Returns up to {@code k} IDs of the products listed by the most orders, most ordered first and ties by
+     * product ID. A heap of the best {@code k} seen so far keeps this at O(products log k).
+     */
+    public List<String> mostOrderedProductIds(int k) {
+        ProductIdTable productIds = ProductIdTable.shared();
+        // min-heap on rank: the root is the weakest of the candidates kept
+        int[] heap = new int[Math.max(0, Math.min(k, orderIdsByProductCode.size()))];
+        int size = 0;
+        for (int productCode = 0; productCode < orderIdsByProductCode.size() && heap.length > 0; productCode++) {
+            if (orderCount(productCode) == 0) {
+                continue;
+            }
+            if (size < heap.length) {
+                heap[size] = productCode;
+                siftUp(heap, size++, productIds);
+            } else if (ranksAbove(productCode, heap[0], productIds)) {
+                heap[0] = productCode;
+                siftDown(heap, size, productIds);
+            }
+        }
+        String[] top = new String[size];
+        while (size > 0) {
+            top[size - 1] = productIds.productId(heap[0]);
+            heap[0] = heap[--size];
+            siftDown(heap, size, productIds);
+        }
+        return new ArrayList<>(List.of(top));
+    }
+
+    private boolean ranksAbove(int productCode, int otherCode, ProductIdTable productIds) {
+        int count = orderCount(productCode);
+        int otherCount = orderCount(otherCode);
+        if (count != otherCount) {
+            return count > otherCount;
+        }
+        return productIds.productId(productCode).compareTo(productIds.productId(otherCode)) < 0;
+    }
+
+    private void siftUp(int[] heap, int index, ProductIdTable productIds) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!ranksAbove(heap[parent], heap[index], productIds)) {
+                return;
+            }
+            swap(heap, parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int size, ProductIdTable productIds) {
+        int index = 0;
+        while (true) {
+            int weakest = index;
+            for (int child = 2 * index + 1; child <= 2 * index + 2 && child < size; child++) {
+                if (ranksAbove(heap[weakest], heap[child], productIds)) {
+                    weakest = child;
+                }
+            }
+            if (weakest == index) {
+                return;
+            }
+            swap(heap, index, weakest);
+            index = weakest;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int code = heap[i];
+        heap[i] = heap[j];
+        heap[j] = code;
+    }
+
+    private Set<String> postings(int productCode) {
+        return productCode >= 0 && productCode < orderIdsByProductCode.size() ? orderIdsByProductCode.get(productCode) : null;
+    }
+}
@@ -0,0 +1,171 @@
+package org.mock.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The line items of an order: product codes from {@link ProductIdTable} and quantities in parallel {@code int}
+ * arrays, in the order the products were first listed. Hot loops use {@link #size()}, {@link #productCode(int)}
+ * and {@link #quantity(int)}; the read-only {@code Map<String, Integer>} view is kept for existing callers.
+ */
+public final class ProductQuantities extends AbstractMap<String, Integer> {
+    public static final ProductQuantities EMPTY = new ProductQuantities(new int[0], new int[0]);
+
+    private final int[] productCodes;
+    private final int[] quantities;
+    private final int size;
+
+    private ProductQuantities(int[] productCodes, int[] quantities) {
+        this.productCodes = productCodes;
+        this.quantities = quantities;
+        this.size = productCodes.length;
+    }
+
+    /**
+     * Returns the map itself when it already is a {@code ProductQuantities}, otherwise a copy of it in its
+     * iteration order.
+     */
+    public static ProductQuantities copyOf(Map<String, Integer> productQuantities) {
+        if (productQuantities == null) {
+            return EMPTY;
+        }
+        if (productQuantities instanceof ProductQuantities compact) {
+            return compact;
+        }
+        Builder builder = new Builder(productQuantities.size());
+        productQuantities.forEach(builder::put);
+        return builder.build();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public int productCode(int index) {
+        return productCodes[index];
+    }
+
+    public String productId(int index) {
+        return ProductIdTable.shared().productId(productCodes[index]);
+    }
+
+    public int quantity(int index) {
+        return quantities[index];
+    }
+
+    /**
+     * Returns the quantity listed for the product code, or 0 when the order does not list it.
+     */
+    public int quantityOf(int productCode) {
+        int index = indexOf(productCode);
+        return index >= 0 ? quantities[index] : 0;
+    }
+
+    public boolean containsCode(int productCode) {
+        return indexOf(productCode) >= 0;
+    }
+
+    @Override
+    public boolean containsKey(Object productId) {
+        return indexOf(ProductIdTable.shared().find(productId)) >= 0;
+    }
+
+    @Override
+    public Integer get(Object productId) {
+        int index = indexOf(ProductIdTable.shared().find(productId));
+        return index >= 0 ? quantities[index] : null;
+    }
+
+    @Override
+    public Set<Entry<String, Integer>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Iterator<Entry<String, Integer>> iterator() {
+                return new Iterator<>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < size;
+                    }
+
+                    @Override
+                    public Entry<String, Integer> next() {
+                        if (next >= size) {
+                            throw new NoSuchElementException();
+                        }
+                        int index = next++;
+                        return new SimpleImmutableEntry<>(productId(index), quantities[index]);
+                    }
+                };
+            }
+        };
+    }
+
+    private int indexOf(int productCode) {
+        if (productCode < 0) {
+            return -1;
+        }
+        for (int i = 0; i < size; i++) {
+            if (productCodes[i] == productCode) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Collects line items with {@code Map.put} semantics: a product listed again keeps its first position and
+     * takes the later quantity.
+     */
+    public static final class Builder {
+        private int[] productCodes;
+        private int[] quantities;
+        private int size;
+
+        public Builder() {
+            this(4);
+        }
+
+        public Builder(int expectedSize) {
+            this.productCodes = new int[Math.max(expectedSize, 1)];
+            this.quantities = new int[Math.max(expectedSize, 1)];
+        }
+
+        public Builder put(String productId, int quantity) {
+            int productCode = ProductIdTable.shared().codeOf(productId);
+            for (int i = 0; i < size; i++) {
+                if (productCodes[i] == productCode) {
+                    quantities[i] = quantity;
+                    return this;
+                }
+            }
+            if (size == productCodes.length) {
+                productCodes = Arrays.copyOf(productCodes, size * 2);
+                quantities = Arrays.copyOf(quantities, size * 2);
+            }
+            productCodes[size] = productCode;
+            quantities[size] = quantity;
+            size++;
+            return this;
+        }
+
+        public ProductQuantities build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            return new ProductQuantities(Arrays.copyOf(productCodes, size), Arrays.copyOf(quantities, size));
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package org.mock.model;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Available stock of a set of products as one atomic counter per product code, for reserving order lines while
+ * orders are taken in. A reservation takes every line of an order or none: lines are taken one by one with
+ * compare-and-set and given back if a later line cannot be covered, so concurrent callers never oversell but
+ * may briefly see stock that is about to be returned.
+ */
+public class StockLedger {
+    private static final int NO_PRODUCT = Integer.MIN_VALUE;
+
+    private final AtomicIntegerArray available;
+    private final int[] initial;
+
+    private StockLedger(int[] initial) {
+        this.initial = initial;
+        this.available = new AtomicIntegerArray(initial);
+    }
+
+    /**
+     * Starts a ledger from the current stock of the products; products without a stock level cannot be reserved.
+     */
+    public static StockLedger of(Collection<Product> products) {
+        ProductIdTable productIds = ProductIdTable.shared();
+        int[] stock = new int[0];
+        for (Product product : products) {
+            int productCode = productIds.codeOf(product.getId());
+            if (productCode >= stock.length) {
+                int oldLength = stock.length;
+                stock = Arrays.copyOf(stock, Math.max(productCode + 1, oldLength * 2));
+                Arrays.fill(stock, oldLength, stock.length, NO_PRODUCT);
+            }
+            stock[productCode] = product.getStockAvailable();
+        }
+        return new StockLedger(stock);
+    }
+
+    public int available(String productId) {
+        int productCode = ProductIdTable.shared().find(productId);
+        return productCode >= 0 && productCode < initial.length ? Math.max(available.get(productCode), 0) : 0;
+    }
+
+    /**
+     * Takes the quantities of every line; returns -1 when all were taken, otherwise the index of the first line
+     * that could not be covered, with nothing taken.
+     */
+    public int reserve(ProductQuantities productQuantities) {
+        return adjust(productQuantities, null);
+    }
+
+    /**
+     * Returns the quantities of every line to stock.
+     */
+    public void release(ProductQuantities productQuantities) {
+        for (int i = 0; i < productQuantities.size(); i++) {
+            int productCode = productQuantities.productCode(i);
+            if (isTracked(productCode)) {
+                available.addAndGet(productCode, productQuantities.quantity(i));
+            }
+        }
+    }
+
+    /**
+     * Swaps an order's reservation of {@code held} for {@code wanted}, taking or returning only the difference per
+     * product. Returns -1 on success, otherwise the index in {@code wanted} of the first line that could not be
+     * covered, with the original reservation left in place.
+     */
+    public int replace(ProductQuantities held, ProductQuantities wanted) {
+        return adjust(wanted, held);
+    }
+
+    /**
+     * Products whose stock has changed since the ledger was started, with their current stock, in code order.
+     */
+    public Map<String, Integer> changedStock() {
+        ProductIdTable productIds = ProductIdTable.shared();
+        Map<String, Integer> changed = new LinkedHashMap<>();
+        for (int productCode = 0; productCode < initial.length; productCode++) {
+            int stock = available.get(productCode);
+            if (initial[productCode] != NO_PRODUCT && stock != initial[productCode]) {
+                changed.put(productIds.productId(productCode), stock);
+            }
+        }
+        return changed;
+    }
+
+    private int adjust(ProductQuantities wanted, ProductQuantities held) {
+        for (int i = 0; i < wanted.size(); i++) {
+            int productCode = wanted.productCode(i);
+            int delta = wanted.quantity(i) - heldQuantity(held, productCode);
+            if (!isTracked(productCode) || (delta > 0 && !take(productCode, delta))) {
+                undoTaken(wanted, held, i);
+                return i;
+            }
+        }
+        // stock is only given back once every line is covered, so a failure has nothing else to undo
+        for (int i = 0; i < wanted.size(); i++) {
+            int productCode = wanted.productCode(i);
+            int delta = wanted.quantity(i) - heldQuantity(held, productCode);
+            if (delta < 0) {
+                available.addAndGet(productCode, -delta);
+            }
+        }
+        if (held != null) {
+            for (int i = 0; i < held.size(); i++) {
+                int productCode = held.productCode(i);
+                if (!wanted.containsCode(productCode) && isTracked(productCode)) {
+                    available.addAndGet(productCode, held.quantity(i));
+                }
+            }
+        }
+        return -1;
+    }
+
+    private boolean take(int productCode, int quantity) {
+        while (true) {
+            int stock = available.get(productCode);
+            if (stock < quantity) {
+                return false;
+            }
+            if (available.compareAndSet(productCode, stock, stock - quantity)) {
+                return true;
+            }
+        }
+    }
+
+    private void undoTaken(ProductQuantities wanted, ProductQuantities held, int failedLine) {
+        for (int i = 0; i < failedLine; i++) {
+            int productCode = wanted.productCode(i);
+            int delta = wanted.quantity(i) - heldQuantity(held, productCode);
+            if (delta > 0) {
+                available.addAndGet(productCode, delta);
+            }
+        }
+    }
+
+    private static int heldQuantity(ProductQuantities held, int productCode) {
+        if (held == null) {
+            return 0;
+        }
+        for (int i = 0; i < held.size(); i++) {
+            if (held.productCode(i) == productCode) {
+                return held.quantity(i);
+            }
+        }
+        return 0;
+    }
+
+    private boolean isTracked(int productCode) {
+        return productCode >= 0 && productCode < initial.length && initial[productCode] != NO_PRODUCT;
+    }
+}
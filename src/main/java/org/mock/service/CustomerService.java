@@ -1,25 +1,55 @@
 package org.mock.service;
 
 import org.mock.validate.CustomerValidator;
+import org.mock.common.DatasetSnapshot;
 import org.mock.common.FileProcessor;
+import org.mock.common.SharedKeyScan;
 import org.mock.enums.CustomerEnum;
+import org.mock.enums.DeletePolicyEnum;
 import org.mock.model.Customer;
+import org.mock.model.CustomerStore;
 import org.mock.util.MessageKeys;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 public class CustomerService {
+    private static final List<String> SNAPSHOT_SOURCES = List.of(MessageKeys.FILE_PATH_CUSTOMER);
+    private static final int SPILL_RUN_RECORDS = 256 * 1024;
+    private static final int KEY_ID = 0;
+    private static final int KEY_EMAIL = 1;
+    private static final int KEY_PHONE_NUMBER = 2;
+
     private final FileProcessor<Customer> fileProcessor;
     private final CustomerValidator customerValidator;
-    private final Set<String> existingCustomerIds = ConcurrentHashMap.newKeySet();
-    private final Set<String> existingEmails = ConcurrentHashMap.newKeySet();
-    private Map<String, Customer> customerMap;
+    private final CustomerStore customerStore = new CustomerStore();
+    private final TakenKeys storedKeys = new TakenKeys() {
+        @Override
+        public boolean hasId(String id) {
+            return customerStore.containsId(id);
+        }
+
+        @Override
+        public boolean hasEmail(String email) {
+            return customerStore.containsEmail(email);
+        }
+
+        @Override
+        public boolean hasPhoneNumber(String phoneNumber) {
+            return customerStore.containsPhone(phoneNumber);
+        }
+    };
+    private final Set<String> changedPhoneNumbers = new LinkedHashSet<>();
+    private long loadedVersion;
 
     public CustomerService(String folderPath) {
         this.fileProcessor = new FileProcessor<>(folderPath);
         this.customerValidator = new CustomerValidator();
-        this.customerMap = new ConcurrentHashMap<>();
     }
 
     public synchronized Collection<Customer> loadAndValidCustomers() {
@@ -30,6 +60,25 @@ public class CustomerService {
         return loadCustomers(false);
     }
 
+    /**
+     * Loads only the customer IDs, for operations that just check that a customer exists. Rows are checked for
+     * length as in a plain load; names, emails and phone numbers are not kept. Returns the number of customers.
+     */
+    public synchronized int loadCustomerIds() {
+        resetData();
+        fileProcessor.forEachRow(MessageKeys.FILE_PATH_CUSTOMER, (values, lineNumber) -> {
+            if (values.length < CustomerEnum.values().length) {
+                handleException(new IllegalArgumentException("Invalid data length"), lineNumber + 1);
+                return;
+            }
+            String id = values[CustomerEnum.ID.ordinal()];
+            if (!customerStore.containsId(id)) {
+                customerStore.put(new Customer(id, null, null, null));
+            }
+        });
+        return customerStore.size();
+    }
+
     public synchronized void addNewCustomers() {
         List<String[]> data = fileProcessor.readFile(MessageKeys.FILE_PATH_NEW_CUSTOMER);
         for (int i = 1; i < data.size(); i++) {
@@ -40,27 +89,20 @@ public class CustomerService {
                 String email = values[CustomerEnum.EMAIL.ordinal()];
                 String phoneNumber = values[CustomerEnum.PHONE_NUMBER.ordinal()];
                 try {
-                    customerValidator.validateId(id, existingCustomerIds.contains(id));
-                    customerValidator.validateEmail(email, existingEmails.contains(email));
+                    customerValidator.validateId(id, customerStore.containsId(id));
+                    customerValidator.validateEmail(email, customerStore.containsEmail(email));
                     customerValidator.validateName(name);
-                    if (customerMap.containsKey(phoneNumber)) {
-                        Customer existingCustomer = customerMap.get(phoneNumber);
-                        existingCustomer.setId(id);
-                        existingCustomer.setName(name);
-                        existingCustomer.setEmail(email);
-                    } else {
-                        customerValidator.validatePhoneNumber(phoneNumber, customerMap.containsKey(phoneNumber));
-                        existingCustomerIds.add(id);
-                        existingEmails.add(email);
-                        Customer customer = new Customer(id, name, email, phoneNumber);
-                        customerMap.put(phoneNumber, customer);
+                    if (!customerStore.update(phoneNumber, id, name, email)) {
+                        customerValidator.validatePhoneNumber(phoneNumber, false);
+                        customerStore.put(new Customer(id, name, email, phoneNumber));
                     }
+                    changedPhoneNumbers.add(phoneNumber);
                 } catch (IllegalArgumentException e) {
                     handleException(e, i + 1);
                 }
             }
         }
-        writeCustomersToFile();
+        writeCustomerChanges();
     }
 
     public synchronized void updateCustomers() {
@@ -70,48 +112,151 @@ public class CustomerService {
         if (!nonExistingCustomers.isEmpty()) {
             handleNonExistingCustomers(nonExistingCustomers);
         }
-        writeCustomersToFile();
+        writeCustomerChanges();
     }
 
     public synchronized void deleteCustomers() {
+        deleteCustomers(OrderReferences.NONE, DeletePolicyEnum.IGNORE);
+    }
+
+    /**
+     * Deletes the customers with the listed phone numbers, applying {@code policy} to their orders: a blocked
+     * customer is kept and logged as an error, while a cascade deletes those orders first. Only the orders found
+     * through {@code orders}, by customer ID, are looked at.
+     */
+    public synchronized void deleteCustomers(OrderReferences orders, DeletePolicyEnum policy) {
         List<String[]> data = fileProcessor.readFile(MessageKeys.FILE_PATH_DELETE_CUSTOMER);
         Set<String> phoneNumbers = processDeleteCustomerData(data);
-        Set<String> customerIdsToRemove = new HashSet<>();
-        Set<String> emailsToRemove = new HashSet<>();
+        Map<String, String> customerIdsByPhone = new LinkedHashMap<>();
         phoneNumbers.forEach(phoneNumber -> {
-            Customer customer = customerMap.get(phoneNumber);
-            if (customer != null) {
-                customerIdsToRemove.add(customer.getId());
-                emailsToRemove.add(customer.getEmail());
-                customerMap.remove(phoneNumber);
-            }else {
+            Customer customer = customerStore.findByPhone(phoneNumber);
+            if (customer == null) {
                 String errorMessage = "Customer with phone number " + phoneNumber + " does not exist in the system.";
                 fileProcessor.writeErrorLog(MessageKeys.FILE_ERROR, errorMessage);
+                return;
+            }
+            int orderCount = policy == DeletePolicyEnum.BLOCK ? orders.orderCount(customer.getId()) : 0;
+            if (orderCount > 0) {
+                String errorMessage = "Customer with phone number " + phoneNumber + " still has " + orderCount + " orders.";
+                fileProcessor.writeErrorLog(MessageKeys.FILE_ERROR, errorMessage);
+                return;
             }
+            customerIdsByPhone.put(phoneNumber, customer.getId());
         });
-        existingCustomerIds.removeAll(customerIdsToRemove);
-        existingEmails.removeAll(emailsToRemove);
-        writeCustomersToFile();
+        if (policy == DeletePolicyEnum.CASCADE) {
+            orders.deleteOrders(customerIdsByPhone.values());
+        }
+        customerIdsByPhone.keySet().forEach(phoneNumber -> {
+            customerStore.removeByPhone(phoneNumber);
+            changedPhoneNumbers.add(phoneNumber);
+        });
+        writeCustomerChanges();
     }
 
     private Collection<Customer> loadCustomers(boolean validate) {
         resetData();
-        List<String[]> data = fileProcessor.readFile(MessageKeys.FILE_PATH_CUSTOMER);
-        for (int i = 1; i < data.size(); i++) {
-            String[] values = data.get(i);
+        String snapshotName = validate ? MessageKeys.FILE_SNAPSHOT_VALID_CUSTOMER : MessageKeys.FILE_SNAPSHOT_CUSTOMER;
+        DatasetSnapshot<Customer> snapshot = fileProcessor.readSnapshot(snapshotName, SNAPSHOT_SOURCES, this::readSnapshot);
+        if (snapshot != null) {
+            snapshot.entries().values().forEach(customerStore::put);
+            snapshot.errors().forEach(message -> fileProcessor.writeErrorLog(MessageKeys.FILE_ERROR, message));
+            return customerStore.values();
+        }
+        List<String> errors = new ArrayList<>();
+        fileProcessor.forEachRow(MessageKeys.FILE_PATH_CUSTOMER, (values, lineNumber) -> {
             try {
-                Customer customer = createCustomerFromValues(values, validate);
-                customerMap.put(customer.getPhoneNumber(), customer);
-                existingCustomerIds.add(customer.getId());
-                existingEmails.add(customer.getEmail());
+                customerStore.put(createCustomerFromValues(values, validate));
             } catch (IllegalArgumentException e) {
-                handleException(e, i+ 1);
+                errors.add(handleException(e, lineNumber + 1));
+            }
+        });
+        fileProcessor.writeSnapshot(snapshotName, SNAPSHOT_SOURCES, out -> writeSnapshot(out, errors));
+        return customerStore.values();
+    }
+
+    private DatasetSnapshot<Customer> readSnapshot(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        Map<String, Customer> customers = new LinkedHashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            Customer customer = new Customer(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF());
+            customers.put(customer.getPhoneNumber(), customer);
+        }
+        return new DatasetSnapshot<>(customers, DatasetSnapshot.readErrors(in));
+    }
+
+    private void writeSnapshot(DataOutputStream out, List<String> errors) throws IOException {
+        List<Customer> customers = customerStore.values();
+        out.writeInt(customers.size());
+        for (Customer customer : customers) {
+            out.writeUTF(customer.getId());
+            out.writeUTF(customer.getName());
+            out.writeUTF(customer.getEmail());
+            out.writeUTF(customer.getPhoneNumber());
+        }
+        DatasetSnapshot.writeErrors(out, errors);
+    }
+
+    /**
+     * Validates the origin customers exactly as {@link #loadAndValidCustomers()} does, for files larger than the
+     * heap: accepted customers are streamed to the output file in file order instead of being kept. A first pass
+     * finds the rows sharing an ID, email or phone number with another row through a {@link SharedKeyScan} on
+     * disk; the validating pass then only remembers the accepted keys of those rows, since every other key is
+     * unique. Returns the accepted customer IDs, which orders are checked against.
+     */
+    public synchronized Set<String> writeValidCustomersExternally() {
+        resetData();
+        Set<String> customerIds = new HashSet<>();
+        Path spillFolder = fileProcessor.createSpillFolder();
+        try (SharedKeyScan sharedKeys = new SharedKeyScan(spillFolder, SPILL_RUN_RECORDS)) {
+            fileProcessor.forEachRow(MessageKeys.FILE_PATH_CUSTOMER, (values, lineNumber) -> {
+                if (values.length >= CustomerEnum.values().length) {
+                    addKey(sharedKeys, KEY_ID, values[CustomerEnum.ID.ordinal()], lineNumber);
+                    addKey(sharedKeys, KEY_EMAIL, values[CustomerEnum.EMAIL.ordinal()], lineNumber);
+                    addKey(sharedKeys, KEY_PHONE_NUMBER, values[CustomerEnum.PHONE_NUMBER.ordinal()], lineNumber);
+                }
+            });
+            sharedKeys.finish();
+            SharedTakenKeys takenKeys = new SharedTakenKeys();
+            try (FileProcessor<Customer>.RowWriter output =
+                         fileProcessor.openRowWriter(MessageKeys.FILE_OUTPUT_CUSTOMER, this::formatCustomer, createHeader())) {
+                fileProcessor.forEachRow(MessageKeys.FILE_PATH_CUSTOMER, (values, lineNumber) -> {
+                    try {
+                        takenKeys.sharedKinds = sharedKeys.sharedKinds(lineNumber);
+                        Customer customer = createCustomerFromValues(values, true, takenKeys);
+                        takenKeys.accept(customer);
+                        customerIds.add(customer.getId());
+                        output.write(customer);
+                    } catch (IllegalArgumentException e) {
+                        handleException(e, lineNumber + 1);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        } catch (IOException | UncheckedIOException e) {
+            fileProcessor.writeErrorLog(MessageKeys.FILE_ERROR, "IOException while spilling customer keys: " + e.getMessage());
+            System.exit(1);
+        } finally {
+            fileProcessor.deleteSpillFolder(spillFolder);
+        }
+        return customerIds;
+    }
+
+    private static void addKey(SharedKeyScan sharedKeys, int kind, String key, int lineNumber) {
+        if (!key.isBlank()) {
+            try {
+                sharedKeys.add(kind, key, lineNumber);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
         }
-        return customerMap.values();
     }
 
     private Customer createCustomerFromValues(String[] values, boolean validate) {
+        return createCustomerFromValues(values, validate, storedKeys);
+    }
+
+    private Customer createCustomerFromValues(String[] values, boolean validate, TakenKeys takenKeys) {
         if (values.length < CustomerEnum.values().length) {
             throw new IllegalArgumentException("Invalid data length");
         }
@@ -120,10 +265,10 @@ public class CustomerService {
         String email = values[CustomerEnum.EMAIL.ordinal()];
         String phoneNumber = values[CustomerEnum.PHONE_NUMBER.ordinal()];
         if (validate) {
-            customerValidator.validateId(id, existingCustomerIds.contains(id));
+            customerValidator.validateId(id, takenKeys.hasId(id));
             customerValidator.validateName(name);
-            customerValidator.validateEmail(email, existingEmails.contains(email));
-            customerValidator.validatePhoneNumber(phoneNumber, customerMap.containsKey(phoneNumber));
+            customerValidator.validateEmail(email, takenKeys.hasEmail(email));
+            customerValidator.validatePhoneNumber(phoneNumber, takenKeys.hasPhoneNumber(phoneNumber));
         }
         return new Customer(id, name, email, phoneNumber);
     }
@@ -139,17 +284,8 @@ public class CustomerService {
                 try {
                     customerValidator.validateName(name);
                     customerValidator.validatePhoneNumber(phoneNumber, false);
-                    Customer existingCustomer = customerMap.get(phoneNumber);
-                    if (existingCustomer != null) {
-                        if (!existingCustomer.getId().equals(id) && existingCustomerIds.contains(id)) {
-                            throw new IllegalArgumentException("ID " + id + " already exists.");
-                        }
-                        if (!existingCustomer.getEmail().equals(email) && existingEmails.contains(email)) {
-                            throw new IllegalArgumentException("Email " + email + " already exists.");
-                        }
-                        existingCustomer.setId(id);
-                        existingCustomer.setName(name);
-                        existingCustomer.setEmail(email);
+                    if (customerStore.update(phoneNumber, id, name, email)) {
+                        changedPhoneNumbers.add(phoneNumber);
                     } else {
                         Customer nonExistingCustomer = new Customer(id, name, email, phoneNumber);
                         nonExistingCustomers.add(nonExistingCustomer);
@@ -189,9 +325,10 @@ public class CustomerService {
         return phoneNumbers;
     }
 
-    private void handleException(IllegalArgumentException e, int lineNumber) {
+    private String handleException(IllegalArgumentException e, int lineNumber) {
         String errorMessage = "Error on line " + lineNumber + ": " + e.getMessage();
         fileProcessor.writeErrorLog(MessageKeys.FILE_ERROR, errorMessage);
+        return errorMessage;
     }
 
     private void handleNonExistingCustomers(List<Customer> nonExistingCustomers) {
@@ -201,13 +338,28 @@ public class CustomerService {
         }
     }
 
-    public Set<String> getCustomerIds() {
-        return existingCustomerIds;
+    /**
+     * Looks the ID up in the store's index; safe to call from several threads at once.
+     */
+    public boolean containsCustomerId(String id) {
+        return customerStore.containsId(id);
+    }
+
+    /**
+     * Passes every customer ID to {@code action} without copying them.
+     */
+    public void forEachCustomerId(Consumer<String> action) {
+        customerStore.forEachId(action);
     }
 
     public void writeCustomersToFile() {
         String header = createHeader();
-        fileProcessor.writeFile(MessageKeys.FILE_OUTPUT_CUSTOMER, new ArrayList<>(customerMap.values()), this::formatCustomer, header);
+        fileProcessor.writeFile(MessageKeys.FILE_OUTPUT_CUSTOMER, customerStore.values(), this::formatCustomer, header);
+    }
+
+    private void writeCustomerChanges() {
+        fileProcessor.writeChanges(MessageKeys.FILE_OUTPUT_CUSTOMER, createHeader(), customerStore.byPhoneNumber(), changedPhoneNumbers,
+                this::formatCustomer, CustomerEnum.PHONE_NUMBER.ordinal(), loadedVersion);
     }
 
     private String createHeader() {
@@ -218,17 +370,69 @@ public class CustomerService {
                 CustomerEnum.PHONE_NUMBER.getHeader());
     }
 
-    private String formatCustomer(Customer customer) {
-        return String.join(MessageKeys.CHARACTER,
-                customer.getId(),
-                customer.getName(),
-                customer.getEmail(),
-                customer.getPhoneNumber());
+    private void formatCustomer(Customer customer, StringBuilder out) {
+        out.append(customer.getId()).append(MessageKeys.CHARACTER)
+                .append(customer.getName()).append(MessageKeys.CHARACTER)
+                .append(customer.getEmail()).append(MessageKeys.CHARACTER)
+                .append(customer.getPhoneNumber());
+    }
+
+    /**
+     * The keys a validated row must not repeat.
+     */
+    private interface TakenKeys {
+        boolean hasId(String id);
+
+        boolean hasEmail(String email);
+
+        boolean hasPhoneNumber(String phoneNumber);
+    }
+
+    /**
+     * Taken keys of an external load: only keys that the current row shares with another row can be taken, and
+     * only those are remembered when a row is accepted.
+     */
+    private static final class SharedTakenKeys implements TakenKeys {
+        private final Set<String> ids = new HashSet<>();
+        private final Set<String> emails = new HashSet<>();
+        private final Set<String> phoneNumbers = new HashSet<>();
+        private int sharedKinds;
+
+        @Override
+        public boolean hasId(String id) {
+            return isShared(KEY_ID) && ids.contains(id);
+        }
+
+        @Override
+        public boolean hasEmail(String email) {
+            return isShared(KEY_EMAIL) && emails.contains(email);
+        }
+
+        @Override
+        public boolean hasPhoneNumber(String phoneNumber) {
+            return isShared(KEY_PHONE_NUMBER) && phoneNumbers.contains(phoneNumber);
+        }
+
+        private void accept(Customer customer) {
+            if (isShared(KEY_ID)) {
+                ids.add(customer.getId());
+            }
+            if (isShared(KEY_EMAIL)) {
+                emails.add(customer.getEmail());
+            }
+            if (isShared(KEY_PHONE_NUMBER)) {
+                phoneNumbers.add(customer.getPhoneNumber());
+            }
+        }
+
+        private boolean isShared(int kind) {
+            return (sharedKinds & (1 << kind)) != 0;
+        }
     }
 
     private void resetData(){
-        existingCustomerIds.clear();
-        existingEmails.clear();
-        customerMap.clear();
+        changedPhoneNumbers.clear();
+        loadedVersion = fileProcessor.sourceFingerprint(SNAPSHOT_SOURCES);
+        customerStore.clear();
     }
 }
@@ -0,0 +1,31 @@
+package org.mock.service;
+
+import java.util.Collection;
+
+/**
+ * The loaded orders that reference a kind of key, such as a product ID or a customer ID, looked up through an
+ * index so that the cost follows the number of orders involved rather than the number loaded.
+ */
+public interface OrderReferences {
+    /**
+     * For callers without loaded orders: nothing is referenced.
+     */
+    OrderReferences NONE = new OrderReferences() {
+        @Override
+        public int orderCount(String key) {
+            return 0;
+        }
+
+        @Override
+        public int deleteOrders(Collection<String> keys) {
+            return 0;
+        }
+    };
+
+    int orderCount(String key);
+
+    /**
+     * Deletes every order referencing any of the keys and returns how many were deleted.
+     */
+    int deleteOrders(Collection<String> keys);
+}
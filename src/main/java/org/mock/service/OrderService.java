@@ -1,24 +1,68 @@
 package org.mock.service;
 
+import org.mock.common.CSVTokenizer;
+import org.mock.common.DatasetSnapshot;
 import org.mock.common.FileProcessor;
+import org.mock.common.IdAllocator;
+import org.mock.common.IsoDateTimeCodec;
+import org.mock.common.RowHandler;
+import org.mock.common.SharedKeyScan;
+import org.mock.enums.DeletePolicyEnum;
+import org.mock.enums.OrderErrorEnum;
+import org.mock.validate.OrderValidationResult;
 import org.mock.validate.OrderValidator;
 import org.mock.enums.OrderEnum;
+import org.mock.model.CustomerOrderIndex;
 import org.mock.model.Order;
+import org.mock.model.PriceChange;
 import org.mock.model.Product;
+import org.mock.model.ProductIdTable;
+import org.mock.model.ProductOrderIndex;
+import org.mock.model.ProductQuantities;
+import org.mock.model.StockLedger;
 import org.mock.util.MessageKeys;
+import org.mock.util.Money;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
 
 public class OrderService {
+    private static final List<String> SNAPSHOT_SOURCES = List.of(MessageKeys.FILE_PATH_ORDER);
+    private static final String ORDER_ID_PREFIX = "ORD";
+    private static final int ORDER_ID_DIGITS = 7;
+    private static final int ORDER_ID_BLOCK_SIZE = 1000;
+    private static final int VALIDATION_BATCH_SIZE = 2048;
+    private static final int SPILL_RUN_RECORDS = 256 * 1024;
+    private static final int ERROR_BATCH_SIZE = 1024;
+    private static final int KEY_ID = 0;
+
     private final FileProcessor<Order> fileProcessor;
     private final OrderValidator orderValidator;
+    private final IdAllocator orderIdAllocator;
     private final CustomerService customerService ;
     private final ProductService productService;
     private Map<String, Order> orderMap;
+    private final ProductOrderIndex productOrderIndex = new ProductOrderIndex();
+    private final CustomerOrderIndex customerOrderIndex = new CustomerOrderIndex();
+    private final Set<String> changedOrderIds = new LinkedHashSet<>();
+    // the codec keeps the last decoded date, so rows parsed in parallel each use their thread's own
+    private final ThreadLocal<IsoDateTimeCodec> dateCodec = ThreadLocal.withInitial(IsoDateTimeCodec::new);
+    private long loadedVersion;
 
     public OrderService(CustomerService customerService, ProductService productService, String folderPath) {
         this.fileProcessor = new FileProcessor<>(folderPath);
+        this.orderIdAllocator = new IdAllocator(Paths.get(folderPath, MessageKeys.FILE_ORDER_ID_SEQUENCE),
+                ORDER_ID_PREFIX, ORDER_ID_DIGITS, ORDER_ID_BLOCK_SIZE);
         this.orderValidator = new OrderValidator();
         this.customerService = customerService;
         this.productService = productService;
@@ -35,79 +79,449 @@ public class OrderService {
 
     private Collection<Order> loadOrders(boolean validate) {
         orderMap.clear();
-        List<String[]> data = fileProcessor.readFile(MessageKeys.FILE_PATH_ORDER);
-        processOrderData(data, validate);
+        productOrderIndex.clear();
+        customerOrderIndex.clear();
+        Map<String, Product> productMap = productService.getAllProducts();
+        long dependencies = dependencyFingerprint(productMap, validate);
+        changedOrderIds.clear();
+        loadedVersion = fileProcessor.sourceFingerprint(SNAPSHOT_SOURCES) * 31 + dependencies;
+        String snapshotName = validate ? MessageKeys.FILE_SNAPSHOT_VALID_ORDER : MessageKeys.FILE_SNAPSHOT_ORDER;
+        DatasetSnapshot<Order> snapshot = fileProcessor.readSnapshot(snapshotName, SNAPSHOT_SOURCES, in -> readSnapshot(in, dependencies));
+        if (snapshot != null) {
+            orderMap.putAll(snapshot.entries());
+            productOrderIndex.addAll(orderMap.values());
+            customerOrderIndex.addAll(orderMap.values());
+            fileProcessor.writeErrorLogs(MessageKeys.FILE_ERROR, snapshot.errors());
+            return orderMap.values();
+        }
+        List<String> errors = new ArrayList<>();
+        LoadTarget target = new LoadTarget() {
+            @Override
+            public boolean containsId(String id, int lineNumber) {
+                return orderMap.containsKey(id);
+            }
+
+            @Override
+            public void accept(Order order, int lineNumber) {
+                putLoadedOrder(order);
+            }
+
+            @Override
+            public void reject(String errorMessage) {
+                errors.add(errorMessage);
+            }
+        };
+        ParallelRowValidator rowValidator = new ParallelRowValidator(validate, customerService::containsCustomerId, productMap, target);
+        fileProcessor.forEachRow(MessageKeys.FILE_PATH_ORDER, rowValidator);
+        rowValidator.finish();
+        fileProcessor.writeErrorLogs(MessageKeys.FILE_ERROR, errors);
+        fileProcessor.writeSnapshot(snapshotName, SNAPSHOT_SOURCES, out -> writeSnapshot(out, dependencies, errors));
         return orderMap.values();
     }
 
-    private void processOrderData(List<String[]> data, boolean validate) {
-        Set<String> customerIds = new HashSet<>(customerService.getCustomerIds());
-        Map<String, Product> productMap = new HashMap<>(productService.getAllProducts());
-        for (int i = 1; i < data.size(); i++) {
-            String[] values = data.get(i);
-            try {
-                Order order = createOrderFromValues(values, validate, customerIds, productMap);
-                orderMap.put(order.getId(), order);
-            } catch (IllegalArgumentException e) {
-                handleException(e, i);
+    /**
+     * Validates the origin orders exactly as {@link #loadAndValidOrders()} does, for files larger than the heap:
+     * accepted orders are streamed to the output file in file order instead of being kept, and errors are written
+     * in batches as they are found. A first pass finds the rows whose order ID occurs more than once through a
+     * {@link SharedKeyScan} on disk; the validating pass, which checks rows in parallel batches as a normal load
+     * does, then only remembers the accepted IDs among those rows. Customers are checked against
+     * {@code customerIds} and products against the current catalog.
+     */
+    public void writeValidOrdersExternally(Set<String> customerIds) {
+        orderMap.clear();
+        productOrderIndex.clear();
+        customerOrderIndex.clear();
+        changedOrderIds.clear();
+        Map<String, Product> productMap = productService.getAllProducts();
+        Path spillFolder = fileProcessor.createSpillFolder();
+        try (SharedKeyScan sharedIds = new SharedKeyScan(spillFolder, SPILL_RUN_RECORDS)) {
+            fileProcessor.forEachRow(MessageKeys.FILE_PATH_ORDER, (values, lineNumber) -> {
+                if (values.length >= OrderEnum.values().length - 1 && !values[OrderEnum.ID.ordinal()].isBlank()) {
+                    try {
+                        sharedIds.add(KEY_ID, values[OrderEnum.ID.ordinal()], lineNumber);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+            sharedIds.finish();
+            try (FileProcessor<Order>.RowWriter output =
+                         fileProcessor.openRowWriter(MessageKeys.FILE_OUTPUT_ORDER, this::formatOrder, createHeader())) {
+                StreamedLoadTarget target = new StreamedLoadTarget(sharedIds, output);
+                ParallelRowValidator rowValidator = new ParallelRowValidator(true, customerIds::contains, productMap, target);
+                fileProcessor.forEachRow(MessageKeys.FILE_PATH_ORDER, rowValidator);
+                rowValidator.finish();
+                target.flushErrors();
             }
+        } catch (IOException | UncheckedIOException e) {
+            fileProcessor.writeErrorLog(MessageKeys.FILE_ERROR, "IOException while spilling order IDs: " + e.getMessage());
+            System.exit(1);
+        } finally {
+            fileProcessor.deleteSpillFolder(spillFolder);
         }
     }
 
-    private Order createOrderFromValues(String[] values, boolean validate, Set<String> customerIds, Map<String, Product> productMap) {
-        if (values.length < OrderEnum.values().length - 1) {
-            throw new IllegalArgumentException("Invalid data length");
+    /**
+     * Where a load puts the rows it accepts and the errors of those it rejects, and how it tells whether an order
+     * ID is already taken by an earlier row.
+     */
+    private interface LoadTarget {
+        boolean containsId(String id, int lineNumber);
+
+        void accept(Order order, int lineNumber);
+
+        void reject(String errorMessage);
+    }
+
+    /**
+     * Target of an external load. An ID can only be taken when the row shares it with another row, so only those
+     * IDs are remembered; accepted orders go straight to the output file.
+     */
+    private final class StreamedLoadTarget implements LoadTarget {
+        private final SharedKeyScan sharedIds;
+        private final FileProcessor<Order>.RowWriter output;
+        private final Set<String> takenSharedIds = new HashSet<>();
+        private final List<String> errors = new ArrayList<>(ERROR_BATCH_SIZE);
+        private int lineNumber = -1;
+        private boolean shared;
+
+        private StreamedLoadTarget(SharedKeyScan sharedIds, FileProcessor<Order>.RowWriter output) {
+            this.sharedIds = sharedIds;
+            this.output = output;
+        }
+
+        @Override
+        public boolean containsId(String id, int lineNumber) {
+            return isShared(lineNumber) && takenSharedIds.contains(id);
         }
-        String id = values[OrderEnum.ID.ordinal()];
+
+        @Override
+        public void accept(Order order, int lineNumber) {
+            if (isShared(lineNumber)) {
+                takenSharedIds.add(order.getId());
+            }
+            output.write(order);
+        }
+
+        @Override
+        public void reject(String errorMessage) {
+            errors.add(errorMessage);
+            if (errors.size() >= ERROR_BATCH_SIZE) {
+                flushErrors();
+            }
+        }
+
+        private void flushErrors() {
+            fileProcessor.writeErrorLogs(MessageKeys.FILE_ERROR, errors);
+            errors.clear();
+        }
+
+        // rows arrive in ascending line order, and both calls for one row ask about the same line
+        private boolean isShared(int lineNumber) {
+            if (lineNumber != this.lineNumber) {
+                try {
+                    shared = sharedIds.sharedKinds(lineNumber) != 0;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                this.lineNumber = lineNumber;
+            }
+            return shared;
+        }
+    }
+
+    /**
+     * Order totals and validation depend on the loaded products and customers, not only on the order file, so
+     * the snapshot also records an order-independent hash of the product prices and stock and, when validating,
+     * of the customer IDs.
+     */
+    private long dependencyFingerprint(Map<String, Product> productMap, boolean validate) {
+        long[] fingerprint = {productMap.size() * 31L};
+        for (Product product : productMap.values()) {
+            long entry = product.getId().hashCode() * 31L + Long.hashCode(product.getPriceCents());
+            fingerprint[0] += mix(entry * 31L + product.getStockAvailable());
+        }
+        if (validate) {
+            customerService.forEachCustomerId(customerId -> fingerprint[0] += 1 + mix(~(long) customerId.hashCode()));
+        }
+        return fingerprint[0];
+    }
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+        value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return value ^ (value >>> 33);
+    }
+
+    private DatasetSnapshot<Order> readSnapshot(DataInputStream in, long dependencies) throws IOException {
+        if (in.readLong() != dependencies) {
+            return null;
+        }
+        int count = in.readInt();
+        Map<String, Order> orders = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            String id = in.readUTF();
+            String customerId = in.readUTF();
+            int lineCount = in.readInt();
+            ProductQuantities.Builder productQuantities = new ProductQuantities.Builder(lineCount);
+            for (int j = 0; j < lineCount; j++) {
+                productQuantities.put(in.readUTF(), in.readInt());
+            }
+            Order order = new Order(id, customerId, productQuantities.build(), null);
+            order.setOrderDate(in.readLong(), in.readInt(), IsoDateTimeCodec.offset(in.readInt()));
+            order.setTotalCents(in.readLong());
+            orders.put(id, order);
+        }
+        return new DatasetSnapshot<>(orders, DatasetSnapshot.readErrors(in));
+    }
+
+    private void writeSnapshot(DataOutputStream out, long dependencies, List<String> errors) throws IOException {
+        out.writeLong(dependencies);
+        out.writeInt(orderMap.size());
+        for (Order order : orderMap.values()) {
+            out.writeUTF(order.getId());
+            out.writeUTF(order.getCustomerId());
+            ProductQuantities productQuantities = order.getProductQuantities();
+            out.writeInt(productQuantities.size());
+            for (int i = 0; i < productQuantities.size(); i++) {
+                out.writeUTF(productQuantities.productId(i));
+                out.writeInt(productQuantities.quantity(i));
+            }
+            out.writeLong(order.getOrderEpochSecond());
+            out.writeInt(order.getOrderNano());
+            out.writeInt(order.getOrderOffset().getTotalSeconds());
+            out.writeLong(order.getTotalCents());
+        }
+        DatasetSnapshot.writeErrors(out, errors);
+    }
+
+    /**
+     * Parses and checks order rows on the fork-join pool in batches and merges the results in file order on the
+     * loading thread. Everything that does not depend on earlier rows runs in parallel; the order ID check, which
+     * does, runs in the merge ahead of the row's other results, so the loaded orders, their insertion order and
+     * the error lines are exactly those of a row-by-row load. Only a bounded number of batches is in flight.
+     */
+    private final class ParallelRowValidator implements RowHandler {
+        private final boolean validate;
+        private final Predicate<String> customerExists;
+        private final Map<String, Product> productMap;
+        private final LoadTarget target;
+        private final int window = ForkJoinPool.getCommonPoolParallelism() * 2;
+        private final Deque<RowBatch> pending = new ArrayDeque<>();
+        private List<String[]> rows = new ArrayList<>(VALIDATION_BATCH_SIZE);
+        private int[] lineNumbers = new int[VALIDATION_BATCH_SIZE];
+
+        private ParallelRowValidator(boolean validate, Predicate<String> customerExists, Map<String, Product> productMap, LoadTarget target) {
+            this.validate = validate;
+            this.customerExists = customerExists;
+            this.productMap = productMap;
+            this.target = target;
+        }
+
+        @Override
+        public void handle(String[] values, int lineNumber) {
+            lineNumbers[rows.size()] = lineNumber;
+            rows.add(values);
+            if (rows.size() == VALIDATION_BATCH_SIZE) {
+                submit();
+                while (pending.size() > window) {
+                    merge(pending.poll());
+                }
+            }
+        }
+
+        private void finish() {
+            if (!rows.isEmpty()) {
+                submit();
+            }
+            while (!pending.isEmpty()) {
+                merge(pending.poll());
+            }
+        }
+
+        private void submit() {
+            List<String[]> batchRows = rows;
+            ForkJoinTask<OrderValidationResult[]> results = ForkJoinPool.commonPool().submit(() -> {
+                OrderValidationResult[] batchResults = new OrderValidationResult[batchRows.size()];
+                for (int i = 0; i < batchResults.length; i++) {
+                    batchResults[i] = parseOrderFields(batchRows.get(i));
+                }
+                return batchResults;
+            });
+            pending.add(new RowBatch(batchRows, lineNumbers, results));
+            rows = new ArrayList<>(VALIDATION_BATCH_SIZE);
+            lineNumbers = new int[VALIDATION_BATCH_SIZE];
+        }
+
+        private OrderValidationResult parseOrderFields(String[] values) {
+            if (values.length < OrderEnum.values().length - 1) {
+                return OrderValidationResult.invalid(OrderErrorEnum.INVALID_DATA_LENGTH);
+            }
+            return parseOrder(values[OrderEnum.ID.ordinal()], values, validate, customerExists, productMap);
+        }
+
+        private void merge(RowBatch batch) {
+            OrderValidationResult[] results = batch.results().join();
+            for (int i = 0; i < results.length; i++) {
+                OrderValidationResult result = results[i];
+                int lineNumber = batch.lineNumbers()[i];
+                if (validate && result.getError() != OrderErrorEnum.INVALID_DATA_LENGTH) {
+                    String id = batch.rows().get(i)[OrderEnum.ID.ordinal()];
+                    OrderValidationResult idError = orderValidator.checkId(id, target.containsId(id, lineNumber), false);
+                    if (idError != null) {
+                        result = idError;
+                    }
+                }
+                if (result.isValid()) {
+                    target.accept(result.getOrder(), lineNumber);
+                } else {
+                    target.reject(errorMessage(result.getMessage(), lineNumber));
+                }
+            }
+        }
+    }
+
+    private record RowBatch(List<String[]> rows, int[] lineNumbers, ForkJoinTask<OrderValidationResult[]> results) {
+    }
+
+    private void putLoadedOrder(Order order) {
+        Order previous = orderMap.put(order.getId(), order);
+        if (previous != null) {
+            unindex(previous);
+        }
+        index(order);
+    }
+
+    private void index(Order order) {
+        productOrderIndex.add(order.getId(), order.getProductQuantities());
+        customerOrderIndex.add(order.getId(), order.getCustomerId());
+    }
+
+    private void unindex(Order order) {
+        productOrderIndex.remove(order.getId(), order.getProductQuantities());
+        customerOrderIndex.remove(order.getId(), order.getCustomerId());
+    }
+
+    /**
+     * Builds the order from a row in one pass: each field is parsed once and, when {@code validate} is set,
+     * checked in the validator's order. The first failing check is returned as the result instead of being
+     * thrown, so a row still reports the one error it always did.
+     */
+    private OrderValidationResult parseOrder(String id, String[] values, boolean validate, Predicate<String> customerExists, Map<String, Product> productMap) {
         String customerId = values[OrderEnum.CUSTOMER_ID.ordinal()];
-        String productQuantitiesStr = values[OrderEnum.PRODUCT_QUANTITIES.ordinal()];
         String orderDateStr = values[OrderEnum.ORDER_DATE.ordinal()];
+        OrderValidationResult error;
+        if (validate && (error = orderValidator.checkCustomerId(customerId, customerExists.test(customerId))) != null) {
+            return error;
+        }
+        ProductQuantities productQuantities;
+        try {
+            productQuantities = parseProductQuantities(values[OrderEnum.PRODUCT_QUANTITIES.ordinal()]);
+        } catch (NumberFormatException e) {
+            return OrderValidationResult.invalid(OrderErrorEnum.INVALID_NUMBER, e.getMessage());
+        }
+        if (validate) {
+            error = orderValidator.checkProductQuantities(productQuantities, productMap.keySet());
+            if (error == null) {
+                error = orderValidator.checkProductStock(productQuantities, productMap);
+            }
+            if (error != null) {
+                return error;
+            }
+        }
+        Order order = new Order(id, customerId, productQuantities, null);
+        IsoDateTimeCodec dateCodec = this.dateCodec.get();
+        if (dateCodec.parse(orderDateStr)) {
+            order.setOrderDate(dateCodec.epochSecond(), dateCodec.nano(), dateCodec.offset());
+        } else {
+            if (validate && (error = orderValidator.checkOrderDate(orderDateStr)) != null) {
+                return error;
+            }
+            order.setOrderDate(OffsetDateTime.parse(orderDateStr));
+        }
+        order.setTotalCents(calculateTotalCents(order, productMap, false));
+        return OrderValidationResult.valid(order);
+    }
+
+    /**
+     * Sets the order date from its text in one pass of {@link IsoDateTimeCodec}. Text outside the codec's shape
+     * (such as a {@code Z} offset) is rejected by the validator when validating and otherwise left to
+     * {@link OffsetDateTime#parse}.
+     */
+    private void readOrderDate(Order order, String orderDateStr, boolean validate) {
+        IsoDateTimeCodec dateCodec = this.dateCodec.get();
+        if (dateCodec.parse(orderDateStr)) {
+            order.setOrderDate(dateCodec.epochSecond(), dateCodec.nano(), dateCodec.offset());
+            return;
+        }
         if (validate) {
-            orderValidator.validateId(id, orderMap.containsKey(id), false);
-            orderValidator.validateCustomerId(customerId, customerIds.contains(customerId));
-            Map<String, Integer> productQuantities = parseProductQuantities(productQuantitiesStr);
-            orderValidator.validateProductQuantities(productQuantities, productMap.keySet());
-            orderValidator.validateProductStock(productQuantities, productMap);
             orderValidator.validateOrderDate(orderDateStr);
         }
-        Order order = new Order(id, customerId, parseProductQuantities(productQuantitiesStr), OffsetDateTime.parse(orderDateStr));
-        order.setTotalAmount(calculateTotalAmount(order, productMap, false));
-        return order;
+        order.setOrderDate(OffsetDateTime.parse(orderDateStr));
     }
 
+    /**
+     * Adds the valid rows under IDs from the allocator, which first moves past every loaded order ID; rejected
+     * rows do not use up an ID. Rows are parsed and checked in parallel, then reserve their stock in row order,
+     * so which rows get the last units does not depend on thread scheduling. A row the allocator cannot give an
+     * ID, because the ID sequence cannot be saved, is reported and returns its stock. The stock left is written to
+     * the product output file.
+     */
     public void addNewOrders() {
         List<String[]> data = fileProcessor.readFile(MessageKeys.FILE_PATH_NEW_ORDER);
-        Set<String> existingIds = orderMap.keySet();
-        Set<String> customerIds = new HashSet<>(customerService.getCustomerIds());
-        Map<String, Product> productMap = new HashMap<>(productService.getAllProducts());
+        orderIdAllocator.skipPast(orderMap.keySet());
+        Map<String, Product> productMap = productService.getAllProducts();
+        StockLedger stockLedger = StockLedger.of(productMap.values());
+        OrderValidationResult[] results = IntStream.range(1, Math.max(data.size(), 1)).parallel()
+                .mapToObj(i -> data.get(i).length >= OrderEnum.values().length - 1
+                        ? parseOrder(null, data.get(i), true, customerService::containsCustomerId, productMap) : null)
+                .toArray(OrderValidationResult[]::new);
+        List<String> errors = new ArrayList<>();
         for (int i = 1; i < data.size(); i++) {
-            String[] values = data.get(i);
-            if (values.length >= OrderEnum.values().length - 1) {
-                String generatedId = generateUniqueOrderId(existingIds);
-                String customerId = values[OrderEnum.CUSTOMER_ID.ordinal()];
-                String productQuantitiesStr = values[OrderEnum.PRODUCT_QUANTITIES.ordinal()];
-                String orderDateStr = values[OrderEnum.ORDER_DATE.ordinal()];
-                try {
-                    orderValidator.validateCustomerId(customerId, customerIds.contains(customerId));
-                    Map<String, Integer> productQuantities = parseProductQuantities(productQuantitiesStr);
-                    orderValidator.validateProductQuantities(productQuantities, productMap.keySet());
-                    orderValidator.validateProductStock(productQuantities, productMap);
-                    orderValidator.validateOrderDate(orderDateStr);
-                    Order order = new Order(generatedId, customerId, productQuantities, OffsetDateTime.parse(orderDateStr));
-                    order.setTotalAmount(calculateTotalAmount(order, productMap, false));
-                    orderMap.put(generatedId, order);
-                } catch (IllegalArgumentException e) {
-                    handleException(e, i);
-                }
+            OrderValidationResult result = results[i - 1];
+            if (result == null) {
+                continue;
+            }
+            if (result.isValid()) {
+                result = reserveStock(result, stockLedger);
+            }
+            if (!result.isValid()) {
+                errors.add(errorMessage(result.getMessage(), i));
+                continue;
+            }
+            try {
+                String generatedId = orderIdAllocator.nextId();
+                result.getOrder().setId(generatedId);
+                orderMap.put(generatedId, result.getOrder());
+                index(result.getOrder());
+                changedOrderIds.add(generatedId);
+            } catch (IllegalStateException e) {
+                stockLedger.release(result.getOrder().getProductQuantities());
+                errors.add(errorMessage(e.getMessage(), i));
             }
         }
-        writeOrdersToFile();
+        fileProcessor.writeErrorLogs(MessageKeys.FILE_ERROR, errors);
+        writeOrderChanges();
+        productService.applyStockLevels(stockLedger.changedStock());
     }
 
+    private static OrderValidationResult reserveStock(OrderValidationResult result, StockLedger stockLedger) {
+        ProductQuantities productQuantities = result.getOrder().getProductQuantities();
+        int failedLine = stockLedger.reserve(productQuantities);
+        if (failedLine < 0) {
+            return result;
+        }
+        return OrderValidationResult.invalid(OrderErrorEnum.STOCK_EXCEEDED, productQuantities.productId(failedLine));
+    }
+
+    /**
+     * Applies the edits row by row. A changed order takes or returns only the difference from its current lines
+     * in stock, and the stock left is written to the product output file.
+     */
     public void updateOrders() {
         List<String[]> data = fileProcessor.readFile(MessageKeys.FILE_PATH_EDIT_ORDER);
-        Set<String> customerIds = new HashSet<>(customerService.getCustomerIds());
-        Map<String, Product> productMap = new HashMap<>(productService.getAllProducts());
+        Map<String, Product> productMap = productService.getAllProducts();
+        StockLedger stockLedger = StockLedger.of(productMap.values());
         for (int i = 1; i < data.size(); i++) {
             String[] values = data.get(i);
             if (values.length >= OrderEnum.values().length - 1) {
@@ -118,26 +532,37 @@ public class OrderService {
                 try {
                     orderValidator.validateId(id, orderMap.containsKey(id), true);
                     Order existingOrder = orderMap.get(id);
-                    if (!newCustomerId.isEmpty() && !customerIds.contains(newCustomerId)) {
-                        orderValidator.validateCustomerId(newCustomerId, customerIds.contains(newCustomerId));
-                        existingOrder.setCustomerId(newCustomerId);
+                    String customerId = existingOrder.getCustomerId();
+                    if (!newCustomerId.isEmpty() && !customerService.containsCustomerId(newCustomerId)) {
+                        orderValidator.validateCustomerId(newCustomerId, false);
+                        customerId = newCustomerId;
                     }
-                    Map<String, Integer> newProductQuantities = parseProductQuantities(newProductQuantitiesStr);
+                    ProductQuantities newProductQuantities = parseProductQuantities(newProductQuantitiesStr);
                     orderValidator.validateProductQuantities(newProductQuantities, productMap.keySet());
                     orderValidator.validateProductStock(newProductQuantities, productMap);
+                    Order editedOrder = new Order(id, customerId, newProductQuantities, null);
+                    editedOrder.setOrderDate(existingOrder.getOrderEpochSecond(), existingOrder.getOrderNano(),
+                            existingOrder.getOrderOffset());
                     if (!newOrderDateStr.isEmpty()){
-                        orderValidator.validateOrderDate(newOrderDateStr);
-                        existingOrder.setOrderDate(OffsetDateTime.parse(newOrderDateStr));
+                        readOrderDate(editedOrder, newOrderDateStr, true);
                     }
-                    existingOrder.setProductQuantities(newProductQuantities);
-                    double newTotalAmount = calculateTotalAmount(existingOrder, productMap, true);
-                    existingOrder.setTotalAmount(newTotalAmount);
+                    editedOrder.setTotalCents(calculateTotalCents(editedOrder, productMap, true));
+                    int failedLine = stockLedger.replace(existingOrder.getProductQuantities(), newProductQuantities);
+                    if (failedLine >= 0) {
+                        throw new IllegalArgumentException(
+                                OrderErrorEnum.STOCK_EXCEEDED.getMessage(newProductQuantities.productId(failedLine)));
+                    }
+                    unindex(existingOrder);
+                    orderMap.put(id, editedOrder);
+                    index(editedOrder);
+                    changedOrderIds.add(id);
                 } catch (IllegalArgumentException e) {
                     handleException(e, i);
                 }
             }
         }
-        writeOrdersToFile();
+        writeOrderChanges();
+        productService.applyStockLevels(stockLedger.changedStock());
     }
 
     public void deleteOrders() {
@@ -156,16 +581,112 @@ public class OrderService {
             }
         }
 
-        for (String orderId : orderIdsToDelete) {
-            orderMap.remove(orderId);
+        releaseAndRemove(orderIdsToDelete);
+        writeOrderChanges();
+    }
+
+    /**
+     * The loaded orders by product ID, for deleting products; see {@link DeletePolicyEnum}.
+     */
+    public OrderReferences productReferences() {
+        return new OrderReferences() {
+            @Override
+            public int orderCount(String productId) {
+                return productOrderIndex.orderCount(ProductIdTable.shared().find(productId));
+            }
+
+            @Override
+            public int deleteOrders(Collection<String> productIds) {
+                Set<String> orderIds = new TreeSet<>();
+                for (String productId : productIds) {
+                    orderIds.addAll(productOrderIndex.orderIds(ProductIdTable.shared().find(productId)));
+                }
+                return removeOrders(orderIds);
+            }
+        };
+    }
+
+    /**
+     * The loaded orders by customer ID, for deleting customers; see {@link DeletePolicyEnum}.
+     */
+    public OrderReferences customerReferences() {
+        return new OrderReferences() {
+            @Override
+            public int orderCount(String customerId) {
+                return customerOrderIndex.orderCount(customerId);
+            }
+
+            @Override
+            public int deleteOrders(Collection<String> customerIds) {
+                Set<String> orderIds = new TreeSet<>();
+                for (String customerId : customerIds) {
+                    orderIds.addAll(customerOrderIndex.orderIds(customerId));
+                }
+                return removeOrders(orderIds);
+            }
+        };
+    }
+
+    /**
+     * Removes the orders from the map and both indexes, records them in the order output file and returns their
+     * lines to stock, which is written to the product output file. The IDs are a copy, since the index sets they
+     * come from change as orders go.
+     */
+    private int removeOrders(Set<String> orderIds) {
+        if (orderIds.isEmpty()) {
+            return 0;
+        }
+        releaseAndRemove(orderIds);
+        writeOrderChanges();
+        return orderIds.size();
+    }
+
+    private void releaseAndRemove(Set<String> orderIds) {
+        StockLedger stockLedger = StockLedger.of(productService.getAllProducts().values());
+        for (String orderId : orderIds) {
+            Order order = orderMap.remove(orderId);
+            unindex(order);
+            stockLedger.release(order.getProductQuantities());
+            changedOrderIds.add(orderId);
         }
-        writeOrdersToFile();
+        productService.applyStockLevels(stockLedger.changedStock());
     }
+
+    /**
+     * Brings the totals of the loaded orders up to date with product price changes. Only the orders listing a
+     * changed product are visited, through the product index, and each total moves by the price difference times
+     * the quantity listed instead of being summed again. Returns the number of orders repriced.
+     */
+    public int applyPriceChanges(List<PriceChange> priceChanges) {
+        ProductIdTable productIds = ProductIdTable.shared();
+        Set<String> repricedIds = new LinkedHashSet<>();
+        for (PriceChange priceChange : priceChanges) {
+            int productCode = productIds.find(priceChange.productId());
+            long deltaCents = priceChange.deltaCents();
+            for (String orderId : productOrderIndex.orderIds(productCode)) {
+                Order order = orderMap.get(orderId);
+                int quantity = order.getProductQuantities().quantityOf(productCode);
+                order.setTotalCents(Math.addExact(order.getTotalCents(), Math.multiplyExact(deltaCents, quantity)));
+                repricedIds.add(orderId);
+            }
+        }
+        if (!repricedIds.isEmpty()) {
+            changedOrderIds.addAll(repricedIds);
+            writeOrderChanges();
+        }
+        return repricedIds.size();
+    }
+
     public void writeOrdersToFile() {
         String header = createHeader();
         fileProcessor.writeFile(MessageKeys.FILE_OUTPUT_ORDER, new ArrayList<>(orderMap.values()), this::formatOrder, header);
     }
 
+    private void writeOrderChanges() {
+        fileProcessor.writeChanges(MessageKeys.FILE_OUTPUT_ORDER, createHeader(), orderMap, changedOrderIds,
+                this::formatOrder, OrderEnum.ID.ordinal(), loadedVersion);
+    }
+
     public String createHeader() {
         return String.join(MessageKeys.CHARACTER,
                 OrderEnum.ID.getHeader(),
@@ -176,74 +697,113 @@ public class OrderService {
     }
 
     public String formatOrder(Order order) {
-        StringBuilder productQuantitiesStr = new StringBuilder();
-        order.getProductQuantities().forEach((productId, quantity) ->
-                productQuantitiesStr.append(productId).append(MessageKeys.CHAR_SPLIT).append(quantity).append(MessageKeys.CHAR_SPLIT_QUANTITY)
-        );
+        StringBuilder out = new StringBuilder();
+        formatOrder(order, out);
+        return out.toString();
+    }
 
-        if (productQuantitiesStr.length() > 0) {
-            productQuantitiesStr.setLength(productQuantitiesStr.length() - 1);
+    public void formatOrder(Order order, StringBuilder out) {
+        out.append(order.getId()).append(MessageKeys.CHARACTER)
+                .append(order.getCustomerId()).append(MessageKeys.CHARACTER);
+        ProductQuantities productQuantities = order.getProductQuantities();
+        for (int i = 0; i < productQuantities.size(); i++) {
+            if (i > 0) {
+                out.append(MessageKeys.CHAR_SPLIT_QUANTITY);
+            }
+            out.append(productQuantities.productId(i)).append(MessageKeys.CHAR_SPLIT).append(productQuantities.quantity(i));
         }
-        return String.join(MessageKeys.CHARACTER,
-                order.getId(),
-                order.getCustomerId(),
-                productQuantitiesStr.toString(),
-                order.getOrderDate().toString(),
-                order.getTotalAmount().toString());
-    }
-
-    protected Map<String, Integer> parseProductQuantities(String productQuantitiesStr) {
-        Map<String, Integer> productQuantities = new HashMap<>();
-        String[] pairs = productQuantitiesStr.split(MessageKeys.CHAR_SPLIT_QUANTITY);
-        for (String pair : pairs) {
-            String[] parts = pair.split(MessageKeys.CHAR_SPLIT);
-            if (parts.length == 2) {
-                String productId = parts[0];
-                Integer quantity = Integer.valueOf(parts[1]);
+        out.append(MessageKeys.CHARACTER);
+        if (order.getOrderOffset() == null) {
+            out.append((Object) null);
+        } else {
+            IsoDateTimeCodec.append(out, order.getOrderEpochSecond(), order.getOrderNano(), order.getOrderOffset());
+        }
+        out.append(MessageKeys.CHARACTER);
+        Money.append(out, order.getTotalCents());
+    }
+
+    /**
+     * Parses {@code "P001:2;P002:1"} in a single scan over the field, with the same result as splitting on
+     * {@code ;} and then on {@code :}: a pair is kept only when it splits into exactly two parts. A product
+     * listed twice keeps its first position and the later quantity.
+     */
+    protected ProductQuantities parseProductQuantities(String productQuantitiesStr) {
+        ProductQuantities.Builder productQuantities = new ProductQuantities.Builder();
+        int length = productQuantitiesStr.length();
+        int pairStart = 0;
+        while (pairStart <= length) {
+            int pairEnd = productQuantitiesStr.indexOf(MessageKeys.CHAR_SPLIT_QUANTITY, pairStart);
+            if (pairEnd < 0) {
+                pairEnd = length;
+            }
+            int end = pairEnd;
+            while (end > pairStart && productQuantitiesStr.charAt(end - 1) == MessageKeys.CHAR_SPLIT.charAt(0)) {
+                end--;
+            }
+            int separator = productQuantitiesStr.indexOf(MessageKeys.CHAR_SPLIT, pairStart);
+            if (separator >= 0 && separator < end
+                    && productQuantitiesStr.lastIndexOf(MessageKeys.CHAR_SPLIT, end - 1) == separator) {
+                String productId = productQuantitiesStr.substring(pairStart, separator);
+                int quantity = CSVTokenizer.parseInt(productQuantitiesStr, separator + 1, end);
                 productQuantities.put(productId, quantity);
             }
+            pairStart = pairEnd + 1;
         }
-        return productQuantities;
+        return productQuantities.build();
     }
 
     public static Double calculateTotalAmount(Order order, Map<String, Product> productMap, boolean validate) {
-        double totalAmount = 0.0;
-        for (Map.Entry<String, Integer> entry : order.getProductQuantities().entrySet()) {
-            String productId = entry.getKey();
-            Integer quantity = entry.getValue();
+        return Money.toDouble(calculateTotalCents(order, productMap, validate));
+    }
+
+    /**
+     * Sums price times quantity over the order lines in cents; products missing from the map count as zero
+     * unless {@code validate} is set.
+     */
+    public static long calculateTotalCents(Order order, Map<String, Product> productMap, boolean validate) {
+        long totalCents = 0;
+        ProductQuantities productQuantities = order.getProductQuantities();
+        for (int i = 0; i < productQuantities.size(); i++) {
+            String productId = productQuantities.productId(i);
             Product product = productMap.get(productId);
             if (product != null) {
-                Double price = product.getPrice();
-                if (price != null) {
-                    totalAmount += price * quantity;
-                } else {
-                    throw new IllegalArgumentException("Price not found for product ID: " + productId);
-                }
-            } else {
-                if (validate) {
-                    throw new IllegalArgumentException("Product not found for ID: " + productId);
-                }
+                totalCents = Math.addExact(totalCents, Math.multiplyExact(product.getPriceCents(), productQuantities.quantity(i)));
+            } else if (validate) {
+                throw new IllegalArgumentException("Product not found for ID: " + productId);
             }
         }
-        return totalAmount;
+        return totalCents;
     }
 
     private void handleException(IllegalArgumentException e, int lineNumber) {
-        String errorMessage = "Error on line " + lineNumber + ": " + e.getMessage();
-        fileProcessor.writeErrorLog(MessageKeys.FILE_ERROR, errorMessage);
+        fileProcessor.writeErrorLog(MessageKeys.FILE_ERROR, errorMessage(e.getMessage(), lineNumber));
     }
 
-    private String generateUniqueOrderId(Set<String> existingIds) {
-        Random random = new Random();
-        String id;
-        do {
-            int randomNumber = random.nextInt(1_000_000_0);
-            id = "ORD" + String.format("%07d", randomNumber);
-        } while (existingIds.contains(id));
-        return id;
+    private static String errorMessage(String message, int lineNumber) {
+        return "Error on line " + lineNumber + ": " + message;
     }
 
     public Map<String, Order> orders(){
         return orderMap;
     }
+
+    /**
+     * Returns up to {@code k} IDs of the products listed by the most orders; see
+     * {@link ProductOrderIndex#mostOrderedProductIds}.
+     */
+    public List<String> mostOrderedProductIds(int k) {
+        return productOrderIndex.mostOrderedProductIds(k);
+    }
+
+    /**
+     * Returns the orders listing any of the given product codes, ordered by order ID, from the product index.
+     */
+    public List<Order> ordersWithAnyProduct(int[] productCodes) {
+        List<String> orderIds = productOrderIndex.orderIdsWithAnyProduct(productCodes);
+        List<Order> orders = new ArrayList<>(orderIds.size());
+        for (String orderId : orderIds) {
+            orders.add(orderMap.get(orderId));
+        }
+        return orders;
+    }
 }
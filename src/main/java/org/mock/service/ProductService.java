@@ -1,23 +1,35 @@
 package org.mock.service;
 
+import org.mock.enums.DeletePolicyEnum;
 import org.mock.enums.ProductEnum;
+import org.mock.model.PriceChange;
 import org.mock.model.Product;
+import org.mock.model.ProductCatalog;
+import org.mock.common.CSVTokenizer;
+import org.mock.common.DatasetSnapshot;
 import org.mock.common.FileProcessor;
 import org.mock.util.MessageKeys;
+import org.mock.util.Money;
 import org.mock.validate.ProductValidator;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class ProductService {
+    private static final List<String> SNAPSHOT_SOURCES = List.of(MessageKeys.FILE_PATH_PRODUCT);
+
     private final FileProcessor<Product> fileProcessor;
     private final ProductValidator productValidator;
-    private final Map<String, Product> productMap;
+    private final AtomicReference<ProductCatalog> catalog = new AtomicReference<>(ProductCatalog.EMPTY);
+    private final Set<String> changedProductIds = new LinkedHashSet<>();
+    private long loadedVersion;
 
     public ProductService(String folderPath) {
         this.fileProcessor = new FileProcessor<>(folderPath);
         this.productValidator = new ProductValidator();
-        this.productMap = new ConcurrentHashMap<>();
     }
 
     public synchronized Collection<Product> loadAndValidProducts() {
@@ -29,21 +41,51 @@ public class ProductService {
     }
 
     private synchronized Collection<Product> loadProducts(boolean validate) {
-        productMap.clear();
-        List<String[]> data = fileProcessor.readFile(MessageKeys.FILE_PATH_PRODUCT);
-        for (int i = 1; i < data.size(); i++) {
-            String[] values = data.get(i);
+        ProductCatalog.Editor editor = catalog.get().replaceAll();
+        changedProductIds.clear();
+        loadedVersion = fileProcessor.sourceFingerprint(SNAPSHOT_SOURCES);
+        String snapshotName = validate ? MessageKeys.FILE_SNAPSHOT_VALID_PRODUCT : MessageKeys.FILE_SNAPSHOT_PRODUCT;
+        DatasetSnapshot<Product> snapshot = fileProcessor.readSnapshot(snapshotName, SNAPSHOT_SOURCES, this::readSnapshot);
+        if (snapshot != null) {
+            editor.putAll(snapshot.entries());
+            snapshot.errors().forEach(message -> fileProcessor.writeErrorLog(MessageKeys.FILE_ERROR, message));
+            return new ArrayList<>(publish(editor).values());
+        }
+        List<String> errors = new ArrayList<>();
+        fileProcessor.forEachRow(MessageKeys.FILE_PATH_PRODUCT, (values, lineNumber) -> {
             try {
-                Product product = createProductFromValues(values, validate);
-                productMap.put(product.getId(), product);
+                editor.put(createProductFromValues(values, validate, editor));
             } catch (IllegalArgumentException e) {
-                handleException(e, i);
+                errors.add(handleException(e, lineNumber));
             }
+        });
+        ProductCatalog loaded = publish(editor);
+        fileProcessor.writeSnapshot(snapshotName, SNAPSHOT_SOURCES, out -> writeSnapshot(out, loaded, errors));
+        return new ArrayList<>(loaded.values());
+    }
+
+    private DatasetSnapshot<Product> readSnapshot(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        Map<String, Product> products = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            Product product = Product.ofCents(in.readUTF(), in.readUTF(), in.readLong(), in.readInt());
+            products.put(product.getId(), product);
+        }
+        return new DatasetSnapshot<>(products, DatasetSnapshot.readErrors(in));
+    }
+
+    private void writeSnapshot(DataOutputStream out, ProductCatalog loaded, List<String> errors) throws IOException {
+        out.writeInt(loaded.size());
+        for (Product product : loaded.values()) {
+            out.writeUTF(product.getId());
+            out.writeUTF(product.getName());
+            out.writeLong(product.getPriceCents());
+            out.writeInt(product.getStockAvailable());
         }
-        return new ArrayList<>(productMap.values());
+        DatasetSnapshot.writeErrors(out, errors);
     }
 
-    private Product createProductFromValues(String[] values, boolean validate) {
+    private Product createProductFromValues(String[] values, boolean validate, ProductCatalog.Editor editor) {
         if (values.length < ProductEnum.values().length) {
             throw new IllegalArgumentException("Invalid data length");
         }
@@ -52,36 +94,70 @@ public class ProductService {
         String priceStr = values[ProductEnum.PRICE.ordinal()];
         String stockStr = values[ProductEnum.STOCK_AVAILABLE.ordinal()];
         if (validate) {
-            productValidator.validateId(id, productMap.containsKey(id), false);
+            productValidator.validateId(id, editor.contains(id), false);
             productValidator.validateName(name);
             productValidator.validatePrice(priceStr);
             productValidator.validateStock(stockStr);
         }
-        return new Product(id, name, Double.parseDouble(priceStr), Integer.parseInt(stockStr));
+        return Product.ofCents(id, name, Money.parseCents(priceStr), CSVTokenizer.parseInt(stockStr));
     }
 
     public synchronized void addNewProducts() {
         List<String[]> data = fileProcessor.readFile(MessageKeys.FILE_PATH_NEW_PRODUCT);
-        processProductData(data);
-        writeProductsToFile();
+        ProductCatalog.Editor editor = catalog.get().edit();
+        processProductData(data, editor);
+        publish(editor);
+        writeProductChanges();
     }
 
-    public synchronized void updateProducts() {
+    /**
+     * Applies the product edits and returns the price changes among them, one per product from its price before
+     * the edits to its price after them, so that orders can be repriced without summing every line again.
+     */
+    public synchronized List<PriceChange> updateProducts() {
         List<String[]> data = fileProcessor.readFile(MessageKeys.FILE_PATH_EDIT_PRODUCT);
-        processProductUpdateData(data);
-        writeProductsToFile();
+        ProductCatalog before = catalog.get();
+        ProductCatalog.Editor editor = before.edit();
+        Set<String> updatedIds = processProductUpdateData(data, editor);
+        ProductCatalog after = publish(editor);
+        writeProductChanges();
+        List<PriceChange> priceChanges = new ArrayList<>();
+        for (String id : updatedIds) {
+            Product previous = before.get(id);
+            long newPriceCents = after.get(id).getPriceCents();
+            if (previous != null && previous.getPriceCents() != newPriceCents) {
+                priceChanges.add(new PriceChange(id, previous.getPriceCents(), newPriceCents));
+            }
+        }
+        return priceChanges;
     }
 
     public synchronized void deleteProducts() {
+        deleteProducts(OrderReferences.NONE, DeletePolicyEnum.IGNORE);
+    }
+
+    /**
+     * Deletes the listed products, applying {@code policy} to the orders that still list them: a blocked product
+     * is kept and its row logged as an error, while a cascade deletes those orders first. Only the orders found
+     * through {@code orders} are looked at. The editor is opened after the cascade, which returns the deleted
+     * orders' stock through {@link #applyStockLevels}.
+     */
+    public synchronized void deleteProducts(OrderReferences orders, DeletePolicyEnum policy) {
         List<String[]> data = fileProcessor.readFile(MessageKeys.FILE_PATH_DELETE_PRODUCT);
-        Set<String> productIdsToDelete = processDeleteProductData(data);
+        Set<String> productIdsToDelete = processDeleteProductData(data, catalog.get(), orders, policy);
+        if (policy == DeletePolicyEnum.CASCADE) {
+            orders.deleteOrders(productIdsToDelete);
+        }
+        ProductCatalog.Editor editor = catalog.get().edit();
         for (String productId : productIdsToDelete) {
-            productMap.remove(productId);
+            editor.remove(productId);
+            changedProductIds.add(productId);
         }
-        writeProductsToFile();
+        publish(editor);
+        writeProductChanges();
     }
 
-    private void processProductData(List<String[]> data) {
+    private void processProductData(List<String[]> data, ProductCatalog.Editor editor) {
         for (int i = 1; i < data.size(); i++) {
             String[] values = data.get(i);
             if (values.length >= ProductEnum.values().length) {
@@ -90,12 +166,12 @@ public class ProductService {
                 String priceStr = values[ProductEnum.PRICE.ordinal()];
                 String stockStr = values[ProductEnum.STOCK_AVAILABLE.ordinal()];
                 try {
-                    productValidator.validateId(id, productMap.containsKey(id), false);
+                    productValidator.validateId(id, editor.contains(id), false);
                     productValidator.validateName(name);
                     productValidator.validatePrice(priceStr);
                     productValidator.validateStock(stockStr);
-                    Product product = new Product(id, name, Double.parseDouble(priceStr), Integer.parseInt(stockStr));
-                    productMap.put(id, product);
+                    editor.put(Product.ofCents(id, name, Money.parseCents(priceStr), CSVTokenizer.parseInt(stockStr)));
+                    changedProductIds.add(id);
                 } catch (IllegalArgumentException e) {
                     handleException(e, i + 1);
                 }
@@ -103,7 +179,8 @@ public class ProductService {
         }
     }
 
-    private void processProductUpdateData(List<String[]> data) {
+    private Set<String> processProductUpdateData(List<String[]> data, ProductCatalog.Editor editor) {
+        Set<String> updatedIds = new LinkedHashSet<>();
         for (int i = 1; i < data.size(); i++) {
             String[] values = data.get(i);
             if (values.length >= ProductEnum.values().length) {
@@ -112,29 +189,56 @@ public class ProductService {
                     String name = values[ProductEnum.NAME.ordinal()];
                     String priceStr = values[ProductEnum.PRICE.ordinal()];
                     String stockStr = values[ProductEnum.STOCK_AVAILABLE.ordinal()];
-                    productValidator.validateId(id, productMap.containsKey(id), true);
+                    productValidator.validateId(id, editor.contains(id), true);
                     productValidator.validateName(name);
                     productValidator.validatePrice(priceStr);
                     productValidator.validateStock(stockStr);
-                    Product existingProduct = productMap.get(id);
-                    existingProduct.setName(name);
-                    existingProduct.setPrice(Double.parseDouble(priceStr));
-                    existingProduct.setStockAvailable(Integer.parseInt(stockStr));
+                    editor.put(Product.ofCents(id, name, Money.parseCents(priceStr), CSVTokenizer.parseInt(stockStr)));
+                    changedProductIds.add(id);
+                    updatedIds.add(id);
                 } catch (IllegalArgumentException e) {
                     handleException(e, i + 1);
                 }
             }
         }
+        return updatedIds;
     }
 
-    private Set<String> processDeleteProductData(List<String[]> data) {
+    /**
+     * Sets the stock of products to the levels left after order reservations and records them in the product
+     * output file.
+     */
+    public synchronized void applyStockLevels(Map<String, Integer> stockLevels) {
+        if (stockLevels.isEmpty()) {
+            return;
+        }
+        ProductCatalog.Editor editor = catalog.get().edit();
+        stockLevels.forEach((productId, stock) -> {
+            Product product = editor.get(productId);
+            if (product != null) {
+                editor.put(product.withStock(stock));
+                changedProductIds.add(productId);
+            }
+        });
+        publish(editor);
+        writeProductChanges();
+    }
+
+    private Set<String> processDeleteProductData(List<String[]> data, ProductCatalog products,
+                                                 OrderReferences orders, DeletePolicyEnum policy) {
         Set<String> productIdsToDelete = new HashSet<>();
         for (int i = 1; i < data.size(); i++) {
             String[] values = data.get(i);
             if (values.length > 0) {
                 String productId = values[ProductEnum.ID.ordinal()];
                 try {
-                    productValidator.validateId(productId, productMap.containsKey(productId), true);
+                    productValidator.validateId(productId, products.contains(productId), true);
+                    if (policy == DeletePolicyEnum.BLOCK) {
+                        int orderCount = orders.orderCount(productId);
+                        if (orderCount > 0) {
+                            throw new IllegalArgumentException("Product " + productId + " is still listed in " + orderCount + " orders.");
+                        }
+                    }
                     if (!productId.isEmpty()) {
                         productIdsToDelete.add(productId);
                     }
@@ -148,7 +252,12 @@ public class ProductService {
 
     public void writeProductsToFile() {
         String header = createHeader();
-        fileProcessor.writeFile(MessageKeys.FILE_OUTPUT_PRODUCT, new ArrayList<>(productMap.values()), this::formatProduct, header);
+        fileProcessor.writeFile(MessageKeys.FILE_OUTPUT_PRODUCT, new ArrayList<>(catalog.get().values()), this::formatProduct, header);
+    }
+
+    private void writeProductChanges() {
+        fileProcessor.writeChanges(MessageKeys.FILE_OUTPUT_PRODUCT, createHeader(), catalog.get().products(), changedProductIds,
+                this::formatProduct, ProductEnum.ID.ordinal(), loadedVersion);
     }
 
     public String createHeader() {
@@ -160,19 +269,42 @@ public class ProductService {
     }
 
     public String formatProduct(Product product) {
-        return String.join(MessageKeys.CHARACTER,
-                product.getId(),
-                product.getName(),
-                String.valueOf(product.getPrice()),
-                String.valueOf(product.getStockAvailable()));
+        StringBuilder out = new StringBuilder();
+        formatProduct(product, out);
+        return out.toString();
+    }
+
+    public void formatProduct(Product product, StringBuilder out) {
+        out.append(product.getId()).append(MessageKeys.CHARACTER)
+                .append(product.getName()).append(MessageKeys.CHARACTER);
+        Money.append(out, product.getPriceCents());
+        out.append(MessageKeys.CHARACTER).append(product.getStockAvailable());
     }
 
+    /**
+     * Returns the current catalog. It never changes, so callers may keep and share it; later changes are
+     * published as new catalogs.
+     */
+    public ProductCatalog getCatalog() {
+        return catalog.get();
+    }
+
+    /**
+     * Returns the products of the current catalog, read-only and unchanging.
+     */
     public Map<String, Product> getAllProducts() {
-        return productMap;
+        return catalog.get().products();
+    }
+
+    private ProductCatalog publish(ProductCatalog.Editor editor) {
+        ProductCatalog published = editor.build();
+        catalog.set(published);
+        return published;
     }
 
-    private void handleException(IllegalArgumentException e, int lineNumber) {
+    private String handleException(IllegalArgumentException e, int lineNumber) {
         String errorMessage = "Error on line " + lineNumber + ": " + e.getMessage();
         fileProcessor.writeErrorLog(MessageKeys.FILE_ERROR, errorMessage);
+        return errorMessage;
     }
 }
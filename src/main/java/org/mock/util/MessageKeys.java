@@ -21,4 +21,12 @@ public class MessageKeys {
     public static final String FILE_PATH_DELETE_ORDER = "InputFolder/orders.delete.csv";
     public static final String FILE_OUTPUT_ORDER = "OutputFolder/orders.output.csv";
     public static final String FILE_ERROR = "OutputFolder/error.output.txt";
+    public static final String FILE_SNAPSHOT_PRODUCT = "SnapshotFolder/products.snapshot";
+    public static final String FILE_SNAPSHOT_VALID_PRODUCT = "SnapshotFolder/products.validated.snapshot";
+    public static final String FILE_SNAPSHOT_CUSTOMER = "SnapshotFolder/customers.snapshot";
+    public static final String FILE_SNAPSHOT_VALID_CUSTOMER = "SnapshotFolder/customers.validated.snapshot";
+    public static final String FILE_SNAPSHOT_ORDER = "SnapshotFolder/orders.snapshot";
+    public static final String FILE_SNAPSHOT_VALID_ORDER = "SnapshotFolder/orders.validated.snapshot";
+    public static final String FILE_ORDER_ID_SEQUENCE = "StateFolder/orders.id.sequence";
+    public static final String FOLDER_SPILL = "SpillFolder";
 }
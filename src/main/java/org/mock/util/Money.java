@@ -0,0 +1,106 @@
+package org.mock.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Amounts of money held as a {@code long} number of cents. Parsing rounds to the cent (half up) and formatting
+ * produces the same text {@link Double#toString(double)} gives for the amount, so output files keep their
+ * existing format.
+ */
+public final class Money {
+    private static final int MAX_FAST_DIGITS = 16;
+    private static final long PLAIN_FORMAT_LIMIT = 1_000_000_000L;
+
+    private Money() {
+    }
+
+    /**
+     * Parses a decimal amount such as {@code 96.92} or {@code 981.0} into cents. Plain decimals with at most two
+     * fraction digits are read directly; anything else goes through {@link BigDecimal}.
+     *
+     * @throws NumberFormatException when the text is not a finite number
+     */
+    public static long parseCents(CharSequence s, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+        long units = 0;
+        int digits = 0;
+        for (; i < to && s.charAt(i) >= '0' && s.charAt(i) <= '9'; i++) {
+            units = units * 10 + (s.charAt(i) - '0');
+            digits++;
+        }
+        long fraction = 0;
+        int fractionDigits = 0;
+        if (i < to && s.charAt(i) == '.') {
+            for (i++; i < to && fractionDigits < 3 && s.charAt(i) >= '0' && s.charAt(i) <= '9'; i++) {
+                fraction = fraction * 10 + (s.charAt(i) - '0');
+                fractionDigits++;
+            }
+        }
+        if (i != to || fractionDigits > 2 || digits + fractionDigits == 0 || digits > MAX_FAST_DIGITS) {
+            return parseSlow(s.subSequence(from, to).toString());
+        }
+        long cents = units * 100 + (fractionDigits == 1 ? fraction * 10 : fraction);
+        return negative ? -cents : cents;
+    }
+
+    public static long parseCents(CharSequence s) {
+        return parseCents(s, 0, s.length());
+    }
+
+    private static long parseSlow(String text) {
+        try {
+            return new BigDecimal(text.trim()).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new NumberFormatException("Invalid amount: " + text);
+        }
+    }
+
+    /**
+     * Converts a {@code double} amount to cents by its decimal representation, so {@code 0.1} is exactly 10.
+     */
+    public static long fromDouble(double amount) {
+        return parseSlow(Double.toString(amount));
+    }
+
+    public static double toDouble(long cents) {
+        return cents / 100.0;
+    }
+
+    /**
+     * Appends the amount as {@code Double.toString} would print it: {@code 12.5}, {@code 981.0}, {@code 96.92}.
+     * Amounts from ten million up switch to scientific notation there, so they are left to the JDK.
+     */
+    public static void append(StringBuilder out, long cents) {
+        long magnitude = Math.abs(cents);
+        if (magnitude >= PLAIN_FORMAT_LIMIT || cents == Long.MIN_VALUE) {
+            out.append(toDouble(cents));
+            return;
+        }
+        if (cents < 0) {
+            out.append('-');
+        }
+        long units = magnitude / 100;
+        int fraction = (int) (magnitude % 100);
+        out.append(units).append('.');
+        if (fraction % 10 == 0) {
+            out.append(fraction / 10);
+        } else {
+            if (fraction < 10) {
+                out.append('0');
+            }
+            out.append(fraction);
+        }
+    }
+
+    public static String toString(long cents) {
+        StringBuilder out = new StringBuilder(16);
+        append(out, cents);
+        return out.toString();
+    }
+}
@@ -3,8 +3,10 @@ package org.mock.validate;
 import java.util.regex.Pattern;
 
 public class CustomerValidator {
-    private static final Pattern EMAIL_PATTERN = Pattern.compile("^[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\\.[A-Z]{2,}$", Pattern.CASE_INSENSITIVE);
-    private static final Pattern PHONE_PATTERN = Pattern.compile("^0[0-9]{9}$");
+    // the accepted languages; validation scans by hand instead, and tests hold the scanners to these patterns
+    static final Pattern EMAIL_PATTERN = Pattern.compile("^[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\\.[A-Z]{2,}$", Pattern.CASE_INSENSITIVE);
+    static final Pattern PHONE_PATTERN = Pattern.compile("^0[0-9]{9}$");
+    private static final int PHONE_NUMBER_LENGTH = 10;
 
     public void validateId(String id, boolean idExists) throws IllegalArgumentException {
         if (id == null || id.isBlank()) {
@@ -22,14 +24,80 @@ public class CustomerValidator {
     }
 
     public void validateEmail(String email, boolean emailExists) throws IllegalArgumentException {
-        if (!EMAIL_PATTERN.matcher(email).matches() || emailExists) {
+        if (!isValidEmail(email) || emailExists) {
             throw new IllegalArgumentException("Invalid or duplicated email: " + email);
         }
     }
 
     public void validatePhoneNumber(String phoneNumber, boolean phoneExists) throws IllegalArgumentException {
-        if (!PHONE_PATTERN.matcher(phoneNumber).matches() || phoneExists) {
+        if (!isValidPhoneNumber(phoneNumber) || phoneExists) {
             throw new IllegalArgumentException("Invalid or duplicated phone number: " + phoneNumber);
         }
     }
+
+    /**
+     * Matches {@link #EMAIL_PATTERN} in one pass: a non-empty local part of ASCII letters, digits and
+     * {@code ._%+-}, a single '@', then letters, digits, '.' and '-' where the last '.' has something before it
+     * and only two or more letters after it.
+     */
+    static boolean isValidEmail(CharSequence email) {
+        if (email == null) {
+            return false;
+        }
+        int length = email.length();
+        int i = 0;
+        while (i < length && isLocalPartChar(email.charAt(i))) {
+            i++;
+        }
+        if (i == 0 || i == length || email.charAt(i) != '@') {
+            return false;
+        }
+        int domainStart = ++i;
+        int lastDot = -1;
+        // letters seen since the last '.', or -1 once a digit or '-' rules the current label out as the ending
+        int trailingLetters = -1;
+        for (; i < length; i++) {
+            char c = email.charAt(i);
+            if (c == '.') {
+                lastDot = i;
+                trailingLetters = 0;
+            } else if (isAsciiLetter(c)) {
+                if (trailingLetters >= 0) {
+                    trailingLetters++;
+                }
+            } else if (isAsciiDigit(c) || c == '-') {
+                trailingLetters = -1;
+            } else {
+                return false;
+            }
+        }
+        return lastDot > domainStart && trailingLetters >= 2;
+    }
+
+    /**
+     * Matches {@link #PHONE_PATTERN}: '0' followed by exactly nine ASCII digits.
+     */
+    static boolean isValidPhoneNumber(CharSequence phoneNumber) {
+        if (phoneNumber == null || phoneNumber.length() != PHONE_NUMBER_LENGTH || phoneNumber.charAt(0) != '0') {
+            return false;
+        }
+        for (int i = 1; i < PHONE_NUMBER_LENGTH; i++) {
+            if (!isAsciiDigit(phoneNumber.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLocalPartChar(char c) {
+        return isAsciiLetter(c) || isAsciiDigit(c) || c == '.' || c == '_' || c == '%' || c == '+' || c == '-';
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
 }
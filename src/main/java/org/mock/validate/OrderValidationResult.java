@@ -0,0 +1,48 @@
+package org.mock.validate;
+
+import org.mock.enums.OrderErrorEnum;
+import org.mock.model.Order;
+
+/**
+ * Outcome of parsing and checking one order row: either the order or the error that rejected it, with the value
+ * the error message names.
+ */
+public final class OrderValidationResult {
+    private final Order order;
+    private final OrderErrorEnum error;
+    private final String detail;
+
+    private OrderValidationResult(Order order, OrderErrorEnum error, String detail) {
+        this.order = order;
+        this.error = error;
+        this.detail = detail;
+    }
+
+    public static OrderValidationResult valid(Order order) {
+        return new OrderValidationResult(order, null, null);
+    }
+
+    public static OrderValidationResult invalid(OrderErrorEnum error, String detail) {
+        return new OrderValidationResult(null, error, detail);
+    }
+
+    public static OrderValidationResult invalid(OrderErrorEnum error) {
+        return invalid(error, null);
+    }
+
+    public boolean isValid() {
+        return error == null;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    public OrderErrorEnum getError() {
+        return error;
+    }
+
+    public String getMessage() {
+        return error.getMessage(detail);
+    }
+}
@@ -1,68 +1,106 @@
 package org.mock.validate;
 
+import org.mock.common.IsoDateTimeCodec;
+import org.mock.enums.OrderErrorEnum;
 import org.mock.model.Product;
+import org.mock.model.ProductQuantities;
 
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Pattern;
 
+/**
+ * Order checks in two forms: {@code check*} methods return the failure as an {@link OrderValidationResult}, or
+ * {@code null} when the check passes, for bulk paths that should not pay for an exception per bad row; the
+ * {@code validate*} methods throw it as an {@link IllegalArgumentException}.
+ */
 public class OrderValidator {
-    private static final Pattern ISO8601_PATTERN = Pattern.compile("^\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}\\.\\d{1,9}(\\+|-)\\d{2}:\\d{2}$");
 
-    public void validateId(String id, boolean idExists, boolean isUpdate) throws IllegalArgumentException {
+    public OrderValidationResult checkId(String id, boolean idExists, boolean isUpdate) {
         if (id == null || id.isBlank()) {
-            throw new IllegalArgumentException("Order ID cannot be empty.");
+            return OrderValidationResult.invalid(OrderErrorEnum.EMPTY_ID);
         }
         if (isUpdate) {
             if (!idExists) {
-                throw new IllegalArgumentException("Order ID does not exist for update: " + id);
+                return OrderValidationResult.invalid(OrderErrorEnum.ID_NOT_FOUND, id);
             }
         } else {
             if (idExists) {
-                throw new IllegalArgumentException("Order ID already exists: " + id);
+                return OrderValidationResult.invalid(OrderErrorEnum.DUPLICATE_ID, id);
             }
         }
+        return null;
     }
 
-    public void validateCustomerId(String customerId, boolean customerExists) throws IllegalArgumentException {
+    public OrderValidationResult checkCustomerId(String customerId, boolean customerExists) {
         if (!customerExists) {
-            throw new IllegalArgumentException("Customer ID does not exist: " + customerId);
+            return OrderValidationResult.invalid(OrderErrorEnum.CUSTOMER_NOT_FOUND, customerId);
         }
+        return null;
     }
 
-    public void validateProductQuantities(Map<String, Integer> productQuantities, Set<String> ProductIds) throws IllegalArgumentException {
+    public OrderValidationResult checkProductQuantities(ProductQuantities productQuantities, Set<String> productIds) {
         if (productQuantities.isEmpty()) {
-            throw new IllegalArgumentException("Invalid product quantities.");
+            return OrderValidationResult.invalid(OrderErrorEnum.EMPTY_PRODUCT_QUANTITIES);
         }
-        for (Map.Entry<String, Integer> entry : productQuantities.entrySet()) {
-            String productId = entry.getKey();
-            Integer quantity = entry.getValue();
-            if (!ProductIds.contains(productId)) {
-                throw new IllegalArgumentException("Invalid product ID: " + productId);
+        for (int i = 0; i < productQuantities.size(); i++) {
+            String productId = productQuantities.productId(i);
+            if (!productIds.contains(productId)) {
+                return OrderValidationResult.invalid(OrderErrorEnum.INVALID_PRODUCT_ID, productId);
             }
-            if (quantity <= 0) {
-                throw new IllegalArgumentException("Product quantity must be greater than 0.");
+            if (productQuantities.quantity(i) <= 0) {
+                return OrderValidationResult.invalid(OrderErrorEnum.INVALID_QUANTITY);
             }
         }
+        return null;
     }
 
-    public void validateProductStock(Map<String, Integer> productQuantities, Map<String, Product> productStocks) throws IllegalArgumentException {
-        for (Map.Entry<String, Integer> entry : productQuantities.entrySet()) {
-            String productId = entry.getKey();
-            Integer orderedQuantity = entry.getValue();
-            Integer availableStock = productStocks.get(productId).getStockAvailable();
-            if (availableStock == null || availableStock < 0) {
-                throw new IllegalArgumentException("Invalid stock for product ID: " + productId);
+    public OrderValidationResult checkProductStock(ProductQuantities productQuantities, Map<String, Product> productStocks) {
+        for (int i = 0; i < productQuantities.size(); i++) {
+            String productId = productQuantities.productId(i);
+            int availableStock = productStocks.get(productId).getStockAvailable();
+            if (availableStock < 0) {
+                return OrderValidationResult.invalid(OrderErrorEnum.INVALID_STOCK, productId);
             }
-            if (orderedQuantity > availableStock) {
-                throw new IllegalArgumentException("Ordered quantity exceeds available stock for product ID: " + productId);
+            if (productQuantities.quantity(i) > availableStock) {
+                return OrderValidationResult.invalid(OrderErrorEnum.STOCK_EXCEEDED, productId);
             }
         }
+        return null;
+    }
+
+    /**
+     * Accepts {@code yyyy-MM-ddTHH:mm:ss.f±HH:MM} with a 1-9 digit fraction and in-range fields.
+     */
+    public OrderValidationResult checkOrderDate(String orderDate) {
+        if (!IsoDateTimeCodec.isValid(orderDate)) {
+            return OrderValidationResult.invalid(OrderErrorEnum.INVALID_ORDER_DATE, orderDate);
+        }
+        return null;
+    }
+
+    public void validateId(String id, boolean idExists, boolean isUpdate) throws IllegalArgumentException {
+        throwIfInvalid(checkId(id, idExists, isUpdate));
+    }
+
+    public void validateCustomerId(String customerId, boolean customerExists) throws IllegalArgumentException {
+        throwIfInvalid(checkCustomerId(customerId, customerExists));
+    }
+
+    public void validateProductQuantities(Map<String, Integer> productQuantities, Set<String> ProductIds) throws IllegalArgumentException {
+        throwIfInvalid(checkProductQuantities(ProductQuantities.copyOf(productQuantities), ProductIds));
+    }
+
+    public void validateProductStock(Map<String, Integer> productQuantities, Map<String, Product> productStocks) throws IllegalArgumentException {
+        throwIfInvalid(checkProductStock(ProductQuantities.copyOf(productQuantities), productStocks));
     }
 
     public void validateOrderDate(String orderDate) throws IllegalArgumentException {
-        if (!ISO8601_PATTERN.matcher(orderDate).matches()) {
-            throw new IllegalArgumentException("Invalid Order Date format: " + orderDate);
+        throwIfInvalid(checkOrderDate(orderDate));
+    }
+
+    private static void throwIfInvalid(OrderValidationResult result) {
+        if (result != null) {
+            throw new IllegalArgumentException(result.getMessage());
         }
     }
 }
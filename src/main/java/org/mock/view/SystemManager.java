@@ -1,10 +1,18 @@
 package org.mock.view;
 
+import org.mock.common.FileProcessor;
+import org.mock.enums.DeletePolicyEnum;
+import org.mock.enums.FunctionEnum;
+import org.mock.enums.LoadModeEnum;
+import org.mock.model.PriceChange;
 import org.mock.service.CustomerService;
 import org.mock.service.OrderService;
 import org.mock.service.ProductService;
 import org.mock.service.SearchService;
+import org.mock.util.MessageKeys;
 
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -16,83 +24,216 @@ public class SystemManager {
     private final OrderService orderService;
     private final SearchService searchService;
     private final ExecutorService executor;
+    private final FileProcessor<Object> outputFiles;
+    private final boolean externalMemory;
+    private final DeletePolicyEnum deletePolicy;
+    private LoadModeEnum productsLoaded = LoadModeEnum.NONE;
+    private LoadModeEnum customersLoaded = LoadModeEnum.NONE;
+    private LoadModeEnum ordersLoaded = LoadModeEnum.NONE;
 
     public SystemManager(String folderPath) {
+        this(folderPath, false, DeletePolicyEnum.IGNORE, SearchService.DEFAULT_TOP_PRODUCT_COUNT);
+    }
+
+    /**
+     * With {@code externalMemory} set, function code 1 validates customers and orders through sorted runs on disk
+     * and streams them to the output files, so origin files larger than the heap can be processed.
+     * {@code deletePolicy} decides what deleting a product or customer does with the orders that reference it;
+     * any policy but {@link DeletePolicyEnum#IGNORE} makes function codes 2.3 and 3.3 load the orders too.
+     * Function code 5.1 writes the {@code topProductCount} most ordered products.
+     */
+    public SystemManager(String folderPath, boolean externalMemory, DeletePolicyEnum deletePolicy, int topProductCount) {
+        this.externalMemory = externalMemory;
+        this.deletePolicy = deletePolicy;
         this.productService = new ProductService(folderPath);
         this.customerService = new CustomerService(folderPath);
         this.orderService = new OrderService(customerService, productService, folderPath);
-        this.searchService = new SearchService(productService, orderService, folderPath);
+        this.searchService = new SearchService(productService, orderService, folderPath, topProductCount);
         this.executor = Executors.newFixedThreadPool(3);
+        this.outputFiles = new FileProcessor<>(folderPath);
+    }
+
+    /**
+     * Loads every dataset once and keeps it in memory; from then on function codes run against the loaded state
+     * instead of reloading the origin files, so changes made by one function code are seen by the next.
+     */
+    public void loadResidentData() throws InterruptedException, ExecutionException {
+        loadData(LoadModeEnum.FULL, LoadModeEnum.FULL, LoadModeEnum.FULL);
+    }
+
+    /**
+     * Loads the datasets that are not yet loaded in the requested modes. Products and customers load in
+     * parallel; orders wait for products, whose prices go into the totals, and in validated mode for customers.
+     */
+    private synchronized void loadData(LoadModeEnum productLoad, LoadModeEnum customerLoad, LoadModeEnum orderLoad)
+            throws InterruptedException, ExecutionException {
+        Future<?> loadProduct = productLoad.isSatisfiedBy(productsLoaded) ? null
+                : executor.submit(() -> loadProducts(productLoad));
+        Future<?> loadCustomer = customerLoad.isSatisfiedBy(customersLoaded) ? null
+                : executor.submit(() -> loadCustomers(customerLoad));
+        if (loadProduct != null || loadCustomer != null) {
+            // orders computed from the previous products or customers are stale
+            ordersLoaded = LoadModeEnum.NONE;
+        }
+
+        await(loadProduct);
+        if (orderLoad == LoadModeEnum.VALIDATED) {
+            await(loadCustomer);
+        }
+        if (!orderLoad.isSatisfiedBy(ordersLoaded)) {
+            loadOrders(orderLoad);
+            ordersLoaded = orderLoad;
+        }
+        await(loadCustomer);
+
+        if (loadProduct != null) {
+            productsLoaded = productLoad;
+        }
+        if (loadCustomer != null) {
+            customersLoaded = customerLoad;
+        }
+    }
+
+    private void loadProducts(LoadModeEnum mode) {
+        if (mode == LoadModeEnum.VALIDATED) {
+            productService.loadAndValidProducts();
+        } else {
+            productService.loadProducts();
+        }
+    }
+
+    private void loadCustomers(LoadModeEnum mode) {
+        if (mode == LoadModeEnum.VALIDATED) {
+            customerService.loadAndValidCustomers();
+        } else if (mode == LoadModeEnum.IDS_ONLY) {
+            customerService.loadCustomerIds();
+        } else {
+            customerService.loadCustomers();
+        }
     }
-    private void loadDataAndThen(Runnable action) throws InterruptedException, ExecutionException {
-        Future<?> loadProduct = executor.submit(productService::loadProducts);
-        Future<?> loadCustomer = executor.submit(customerService::loadCustomers);
-        Future<?> loadOrder = executor.submit(orderService::loadOrders);
 
-        loadProduct.get();
-        loadCustomer.get();
-        loadOrder.get();
+    private void loadOrders(LoadModeEnum mode) {
+        if (mode == LoadModeEnum.VALIDATED) {
+            orderService.loadAndValidOrders();
+        } else {
+            orderService.loadOrders();
+        }
+    }
 
-        action.run();
+    /**
+     * Function code 1 with a bounded heap. Products are loaded and validated in memory as usual, since orders are
+     * priced from them; customers and orders are validated with external merges and streamed to their output
+     * files, leaving only the accepted customer IDs in memory. Neither is left loaded afterwards.
+     */
+    private synchronized void writeValidatedDataExternally() throws InterruptedException, ExecutionException {
+        Future<Set<String>> customerIds = executor.submit(customerService::writeValidCustomersExternally);
+        customersLoaded = LoadModeEnum.NONE;
+        ordersLoaded = LoadModeEnum.NONE;
+        loadData(LoadModeEnum.VALIDATED, LoadModeEnum.NONE, LoadModeEnum.NONE);
+        productService.writeProductsToFile();
+        orderService.writeValidOrdersExternally(customerIds.get());
+    }
+
+    private static void await(Future<?> load) throws InterruptedException, ExecutionException {
+        if (load != null) {
+            load.get();
+        }
     }
+
     public void processFunction(String functionCode) {
         try {
-            switch (functionCode) {
-                case "1":
-                    Future<?> loadProduct = executor.submit(productService::loadAndValidProducts);
-                    Future<?> loadCustomer = executor.submit(customerService::loadAndValidCustomers);
-                    loadProduct.get();
-                    loadCustomer.get();
-                    orderService.loadAndValidOrders();
-                    productService.writeProductsToFile();
-                    customerService.writeCustomersToFile();
-                    orderService.writeOrdersToFile();
-                    break;
-                case "2.1":
-                    loadDataAndThen(productService::addNewProducts);
-                    break;
-                case "2.2":
-                    loadDataAndThen(productService::updateProducts);
-                    break;
-                case "2.3":
-                    loadDataAndThen(productService::deleteProducts);
-                    break;
-                case "3.1":
-                    loadDataAndThen(customerService::addNewCustomers);
-                    break;
-                case "3.2":
-                    loadDataAndThen(customerService::updateCustomers);
-                    break;
-                case "3.3":
-                    loadDataAndThen(customerService::deleteCustomers);
-                    break;
-                case "4.1":
-                    loadDataAndThen(orderService::addNewOrders);
-                    break;
-                case "4.2":
-                    loadDataAndThen(orderService::updateOrders);
-                    break;
-                case "4.3":
-                    orderService.loadOrders();
-                    orderService.deleteOrders();
-                    break;
-                case "5.1":
-                    productService.loadProducts();
-                    orderService.loadOrders();
-                    searchService.searchToProduct();
-                    break;
-                case "5.2":
-                    productService.loadProducts();
-                    orderService.loadOrders();
-                    searchService.searchOrdersByProductId();
-                    break;
-                default:
-                    System.out.println("Invalid function code. Please try again.");
-            }
+            execute(functionCode);
         } catch (InterruptedException | ExecutionException e) {
             System.err.println("An error occurred while processing tasks: " + e.getMessage());
         } finally {
-            executor.shutdown();
+            shutdown();
+        }
+    }
+
+    /**
+     * Loads the datasets the function code needs and runs it; returns {@code false} when the code is unknown.
+     */
+    public boolean execute(String functionCode) throws InterruptedException, ExecutionException {
+        FunctionEnum function = FunctionEnum.fromCode(functionCode);
+        if (function == null) {
+            System.out.println("Invalid function code. Please try again.");
+            return false;
+        }
+        if (function == FunctionEnum.LOAD_ALL && externalMemory) {
+            writeValidatedDataExternally();
+            return true;
+        }
+        if (checksOrderReferences(function)) {
+            // the policy looks up the orders of the deleted products or customers; orders are priced from products
+            loadData(LoadModeEnum.FULL, function.getCustomerLoad(), LoadModeEnum.FULL);
+        } else {
+            loadData(function.getProductLoad(), function.getCustomerLoad(), function.getOrderLoad());
+        }
+        switch (function) {
+            case LOAD_ALL:
+                productService.writeProductsToFile();
+                customerService.writeCustomersToFile();
+                orderService.writeOrdersToFile();
+                break;
+            case ADD_PRODUCTS:
+                productService.addNewProducts();
+                break;
+            case UPDATE_PRODUCTS:
+                List<PriceChange> priceChanges = productService.updateProducts();
+                if (ordersLoaded != LoadModeEnum.NONE) {
+                    // orders loaded later are priced from the updated catalog
+                    orderService.applyPriceChanges(priceChanges);
+                }
+                break;
+            case DELETE_PRODUCTS:
+                productService.deleteProducts(orderService.productReferences(), deletePolicy);
+                break;
+            case ADD_CUSTOMERS:
+                customerService.addNewCustomers();
+                break;
+            case UPDATE_CUSTOMERS:
+                customerService.updateCustomers();
+                break;
+            case DELETE_CUSTOMERS:
+                customerService.deleteCustomers(orderService.customerReferences(), deletePolicy);
+                break;
+            case ADD_ORDERS:
+                orderService.addNewOrders();
+                break;
+            case UPDATE_ORDERS:
+                orderService.updateOrders();
+                break;
+            case DELETE_ORDERS:
+                orderService.deleteOrders();
+                break;
+            case SEARCH_TOP_PRODUCTS:
+                searchService.searchToProduct();
+                break;
+            case SEARCH_ORDERS_BY_PRODUCT_ID:
+                searchService.searchOrdersByProductId();
+                break;
+        }
+        return true;
+    }
+
+    private boolean checksOrderReferences(FunctionEnum function) {
+        return deletePolicy != DeletePolicyEnum.IGNORE
+                && (function == FunctionEnum.DELETE_PRODUCTS || function == FunctionEnum.DELETE_CUSTOMERS);
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        compactOutputFiles();
+        FileProcessor.closeErrorLogs();
+    }
+
+    /**
+     * Folds the change logs into the output files, which are complete on their own once the process is done.
+     */
+    private void compactOutputFiles() {
+        for (String outputFile : List.of(MessageKeys.FILE_OUTPUT_PRODUCT, MessageKeys.FILE_OUTPUT_CUSTOMER,
+                MessageKeys.FILE_OUTPUT_ORDER)) {
+            outputFiles.compactChanges(outputFile);
         }
     }
 }
@@ -0,0 +1,160 @@
+package org.mock.view;
+
+import org.mock.common.FileProcessor;
+import org.mock.enums.DeletePolicyEnum;
+import org.mock.service.SearchService;
+import org.mock.enums.FunctionEnum;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Long-running mode: loads the datasets once and then runs function codes received on a loopback TCP socket
+ * against the in-memory state. The protocol is one function code per line ({@code 2.1}, {@code 5.2}, ...); each
+ * is answered with {@code OK <code>} once it has finished and its error log entries are on disk, or with
+ * {@code ERROR <reason>}. The line {@code shutdown} stops the server.
+ * <p>
+ * Function codes that change data run one at a time; searches only read the datasets and run concurrently with
+ * each other.
+ */
+public class SystemServer {
+    public static final int DEFAULT_PORT = 5050;
+    private static final String SHUTDOWN = "shutdown";
+
+    private final SystemManager systemManager;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newCachedThreadPool();
+    private final Set<Socket> openSockets = ConcurrentHashMap.newKeySet();
+    private final ReadWriteLock dataLock = new ReentrantReadWriteLock();
+
+    public SystemServer(String folderPath, int port) throws IOException {
+        this(folderPath, port, false, DeletePolicyEnum.IGNORE, SearchService.DEFAULT_TOP_PRODUCT_COUNT);
+    }
+
+    /**
+     * Serves on {@code port}, or on a free port when it is 0; the options are those of
+     * {@link SystemManager#SystemManager(String, boolean, DeletePolicyEnum, int)}.
+     */
+    public SystemServer(String folderPath, int port, boolean externalMemory, DeletePolicyEnum deletePolicy,
+                        int topProductCount) throws IOException {
+        this.systemManager = new SystemManager(folderPath, externalMemory, deletePolicy, topProductCount);
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Loads the datasets and serves connections until a client sends {@code shutdown}.
+     */
+    public void serve() {
+        try {
+            systemManager.loadResidentData();
+            System.out.println("Listening on " + serverSocket.getLocalSocketAddress());
+            while (!serverSocket.isClosed()) {
+                Socket socket = serverSocket.accept();
+                openSockets.add(socket);
+                connections.submit(() -> handleConnection(socket));
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            System.err.println("An error occurred while loading data: " + e.getMessage());
+        } catch (IOException e) {
+            if (!serverSocket.isClosed()) {
+                System.err.println("Server socket failed: " + e.getMessage());
+            }
+        } finally {
+            stop();
+            awaitConnections();
+            systemManager.shutdown();
+        }
+    }
+
+    private void handleConnection(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String functionCode = line.trim();
+                if (functionCode.isEmpty()) {
+                    continue;
+                }
+                if (functionCode.equals(SHUTDOWN)) {
+                    out.println("OK " + SHUTDOWN);
+                    stop();
+                    return;
+                }
+                out.println(process(functionCode));
+            }
+        } catch (IOException e) {
+            if (!serverSocket.isClosed()) {
+                System.err.println("Connection failed: " + e.getMessage());
+            }
+        } finally {
+            openSockets.remove(socket);
+        }
+    }
+
+    private String process(String functionCode) {
+        FunctionEnum function = FunctionEnum.fromCode(functionCode);
+        Lock lock = function != null && function.isReadOnly() ? dataLock.readLock() : dataLock.writeLock();
+        lock.lock();
+        try {
+            if (!systemManager.execute(functionCode)) {
+                return "ERROR Invalid function code: " + functionCode;
+            }
+            FileProcessor.flushErrorLogs();
+            return "OK " + functionCode;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "ERROR Interrupted while processing " + functionCode;
+        } catch (ExecutionException e) {
+            return "ERROR An error occurred while processing tasks: " + e.getMessage();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes idle connections and waits for function codes that are still running.
+     */
+    private void awaitConnections() {
+        for (Socket socket : openSockets) {
+            try {
+                socket.shutdownInput();
+            } catch (IOException e) {
+                // the connection is already closed
+            }
+        }
+        connections.shutdown();
+        try {
+            connections.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void stop() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close server socket: " + e.getMessage());
+        }
+    }
+}
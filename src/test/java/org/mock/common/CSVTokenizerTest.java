@@ -0,0 +1,100 @@
+package org.mock.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CSVTokenizerTest {
+
+    private final CSVTokenizer tokenizer = new CSVTokenizer(',');
+
+    @Test
+    void toArrayMatchesStringSplit() {
+        String[] lines = {
+                "P0001,Nồi cơm điện,96.92,83",
+                "ORD0000002,,P0595:3;P0063:24,",
+                ",CUS3759,P0381:33,2024-10-02T14:31:26.619210+07:07,44002.12000000001",
+                "a,,b,,",
+                ",,,",
+                ",",
+                "no delimiter",
+                " , ",
+                "x"
+        };
+        for (String line : lines) {
+            assertArrayEquals(line.split(","), tokenizer.reset(line).toArray(), line);
+        }
+    }
+
+    @Test
+    void toArrayMatchesStringSplitOnRandomLines() {
+        Random random = new Random(42);
+        char[] alphabet = {',', 'a', 'b', ' ', 'ễ', ';', ':'};
+        for (int n = 0; n < 10_000; n++) {
+            StringBuilder line = new StringBuilder();
+            int length = random.nextInt(12);
+            for (int i = 0; i < length; i++) {
+                line.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+            String value = line.toString();
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            assertArrayEquals(value.split(","), tokenizer.reset(bytes, 0, bytes.length).toArray(), value);
+            assertEquals(value.trim().isEmpty(), tokenizer.isBlank(), value);
+        }
+    }
+
+    @Test
+    void decodesUtf8Slices() {
+        byte[] bytes = "xxCUS0002,Nguyễn Đạt Tùng,3wla7z5a@gmail.comyy".getBytes(StandardCharsets.UTF_8);
+        tokenizer.reset(bytes, 2, bytes.length - 4);
+
+        assertEquals(3, tokenizer.fieldCount());
+        assertEquals("CUS0002", tokenizer.field(0));
+        assertEquals("Nguyễn Đạt Tùng", tokenizer.field(1));
+        assertEquals("3wla7z5a@gmail.com", tokenizer.field(2));
+    }
+
+    @Test
+    void parsesNumbersFromFieldSlices() {
+        tokenizer.reset("P0001,96.92,83,-7");
+
+        assertEquals(96.92, tokenizer.doubleField(1));
+        assertEquals(83, tokenizer.intField(2));
+        assertEquals(-7, tokenizer.intField(3));
+    }
+
+    @Test
+    void parseIntMatchesIntegerParseInt() {
+        String[] values = {"0", "7", "-0", "+12", "999999999", "2147483647", "-2147483648", "0000000042"};
+        for (String value : values) {
+            assertEquals(Integer.parseInt(value), CSVTokenizer.parseInt(value), value);
+        }
+        String[] invalid = {"", "-", "+", "1a", " 1", "2147483648", "1.0"};
+        for (String value : invalid) {
+            NumberFormatException expected = assertThrows(NumberFormatException.class, () -> Integer.parseInt(value));
+            NumberFormatException actual = assertThrows(NumberFormatException.class, () -> CSVTokenizer.parseInt(value));
+            assertEquals(expected.getMessage(), actual.getMessage(), value);
+        }
+    }
+
+    @Test
+    void parseDoubleMatchesDoubleParseDouble() {
+        String[] values = {"96.92", "563.72", "12.50", "25.00", "0", "-0", "-0.0", ".5", "5.", "+3.25",
+                "44002.12000000001", "1e3", " 7.5 ", "123456789012345", "0.1234567890123456789", "NaN"};
+        for (String value : values) {
+            assertEquals(Double.parseDouble(value), CSVTokenizer.parseDouble(value), value);
+        }
+        Random random = new Random(7);
+        for (int n = 0; n < 100_000; n++) {
+            String value = (random.nextInt(1_000_000)) + "." + String.format("%02d", random.nextInt(100));
+            assertEquals(Double.parseDouble(value), CSVTokenizer.parseDouble(value), value);
+        }
+        String[] invalid = {"", ".", "-", "abc", "1..2"};
+        for (String value : invalid) {
+            assertThrows(NumberFormatException.class, () -> CSVTokenizer.parseDouble(value), value);
+        }
+    }
+}
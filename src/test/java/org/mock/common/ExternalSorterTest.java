@@ -0,0 +1,75 @@
+package org.mock.common;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExternalSorterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void sortedMergesManyRunsInKeyThenValueOrder() throws Exception {
+        Random random = new Random(23);
+        List<Map.Entry<String, Long>> expected = new ArrayList<>();
+        try (ExternalSorter sorter = new ExternalSorter(tempDir, 50)) {
+            // 200 runs of 50 records are more than one merge takes, so runs are first merged in groups
+            for (int i = 0; i < 10_000; i++) {
+                String key = "K" + random.nextInt(3_000);
+                long value = random.nextInt(100);
+                sorter.add(key, value);
+                expected.add(Map.entry(key, value));
+            }
+            expected.sort(Map.Entry.<String, Long>comparingByKey().thenComparing(Map.Entry.comparingByValue()));
+
+            ExternalSorter.Cursor cursor = sorter.sorted();
+            List<Map.Entry<String, Long>> actual = new ArrayList<>();
+            while (cursor.next()) {
+                actual.add(Map.entry(cursor.key(), cursor.value()));
+            }
+            assertEquals(expected, actual);
+        }
+        try (var files = Files.list(tempDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void sortedWithoutRecordsIsEmpty() throws Exception {
+        try (ExternalSorter sorter = new ExternalSorter(tempDir, 10)) {
+            assertFalse(sorter.sorted().next());
+        }
+    }
+
+    @Test
+    void sharedKeyScanReportsRowsSharingAKeyOfTheSameKind() throws Exception {
+        try (SharedKeyScan scan = new SharedKeyScan(tempDir, 2)) {
+            scan.add(0, "C1", 1);
+            scan.add(1, "a@x.com", 1);
+            scan.add(0, "C2", 2);
+            scan.add(1, "C1", 2);
+            scan.add(0, "C1", 4);
+            scan.add(1, "b@x.com", 4);
+            scan.add(0, "C3", 5);
+            scan.add(1, "b@x.com", 5);
+            scan.finish();
+
+            assertEquals(0b01, scan.sharedKinds(1));
+            assertEquals(0, scan.sharedKinds(2));
+            assertEquals(0, scan.sharedKinds(3));
+            assertEquals(0b11, scan.sharedKinds(4));
+            assertEquals(0b10, scan.sharedKinds(5));
+            assertEquals(0, scan.sharedKinds(6));
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package org.mock.common;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileProcessorTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void forEachRowSkipsHeaderAndBlankLines() throws IOException {
+        Files.writeString(folder.resolve("rows.csv"), "id,name\r\nP1,Nồi\r\n\r\n   \nP2,Bình\rP3,x", StandardCharsets.UTF_8);
+
+        List<String> rows = new ArrayList<>();
+        new FileProcessor<String>(folder.toString()).forEachRow("rows.csv",
+                (values, lineNumber) -> rows.add(lineNumber + ":" + String.join("|", values)));
+
+        assertEquals(List.of("1:P1|Nồi", "2:P2|Bình", "3:P3|x"), rows);
+    }
+
+    @Test
+    void parallelReadMatchesSequentialRead() throws IOException {
+        StringBuilder content = new StringBuilder("id,customerId,productQuantities,orderDate\n");
+        for (int i = 0; i < 20_000; i++) {
+            content.append("ORD").append(i).append(",CUS").append(i % 97).append(",P0").append(i % 13).append(":3,")
+                    .append(i % 7 == 0 ? "\r\n\r\n" : "\n");
+        }
+        Files.writeString(folder.resolve("orders.csv"), content, StandardCharsets.UTF_8);
+
+        List<String> sequential = readAll(new FileProcessor<>(folder.toString()));
+        List<String> parallel = readAll(new FileProcessor<>(folder.toString(), 1, 1024));
+
+        assertEquals(20_000, sequential.size());
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    void errorLogKeepsMessageOrderAcrossProcessors() throws IOException {
+        FileProcessor<String> first = new FileProcessor<>(folder.toString());
+        FileProcessor<String> second = new FileProcessor<>(folder.toString());
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            String message = "Error on line " + i + ": message";
+            (i % 2 == 0 ? first : second).writeErrorLog("OutputFolder/error.output.txt", message);
+            expected.add(message);
+        }
+        FileProcessor.closeErrorLogs();
+
+        assertEquals(expected, Files.readAllLines(folder.resolve("OutputFolder/error.output.txt")));
+    }
+
+    @Test
+    void writeFileEncodesRowsAsUtf8() throws IOException {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            rows.add("P" + i + ",Nồi cơm điện \uD83C\uDF5A," + i + ".5");
+        }
+        Files.writeString(folder.resolve("out.csv"), "stale content that must be truncated\n".repeat(100_000));
+
+        new FileProcessor<String>(folder.toString()).writeFile("out.csv", rows, (row, out) -> out.append(row), "id,name,price");
+
+        List<String> expected = new ArrayList<>(rows);
+        expected.add(0, "id,name,price");
+        assertEquals(expected, Files.readAllLines(folder.resolve("out.csv"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void snapshotIsOnlyReadWhileSourceIsUnchanged() throws IOException {
+        Files.writeString(folder.resolve("products.csv"), "id,name\nP1,Nồi\n");
+        FileProcessor<String> fileProcessor = new FileProcessor<>(folder.toString());
+        List<String> sources = List.of("products.csv");
+
+        fileProcessor.writeSnapshot("snapshots/products.snapshot", sources, out -> out.writeUTF("P1"));
+        assertEquals("P1", fileProcessor.readSnapshot("snapshots/products.snapshot", sources, in -> in.readUTF()));
+
+        Files.writeString(folder.resolve("products.csv"), "id,name\nP2,Nồi\n");
+        assertNull(fileProcessor.readSnapshot("snapshots/products.snapshot", sources, in -> in.readUTF()));
+    }
+
+    @Test
+    void snapshotOnlyHashesSourcesModifiedJustBeforeIt() throws IOException {
+        Path products = folder.resolve("products.csv");
+        Files.writeString(products, "id,name\nP1,Nồi\n");
+        FileTime lastHour = FileTime.fromMillis(System.currentTimeMillis() - 3_600_000);
+        Files.setLastModifiedTime(products, lastHour);
+        FileProcessor<String> fileProcessor = new FileProcessor<>(folder.toString());
+        List<String> sources = List.of("products.csv");
+        fileProcessor.writeSnapshot("snapshots/products.snapshot", sources, out -> out.writeUTF("P1"));
+
+        Files.writeString(products, "id,name\nP2,Nồi\n");
+        Files.setLastModifiedTime(products, lastHour);
+        assertEquals("P1", fileProcessor.readSnapshot("snapshots/products.snapshot", sources, in -> in.readUTF()));
+
+        Files.setLastModifiedTime(products, FileTime.fromMillis(lastHour.toMillis() + 1));
+        assertNull(fileProcessor.readSnapshot("snapshots/products.snapshot", sources, in -> in.readUTF()));
+    }
+
+    @Test
+    void writeChangesAppendsToLogUntilDatasetIsReloaded() throws IOException {
+        FileProcessor<String> fileProcessor = new FileProcessor<>(folder.toString());
+        CSVFormatter<String> formatter = (row, out) -> out.append(row);
+        Map<String, String> current = new LinkedHashMap<>();
+        current.put("P1", "P1,Nồi");
+        current.put("P2", "P2,Bình");
+
+        fileProcessor.writeChanges("out.csv", "id,name", current, Set.of("P2"), formatter, 0, 1L);
+        current.put("P3", "P3,Ấm");
+        current.remove("P1");
+        fileProcessor.writeChanges("out.csv", "id,name", current, Set.of("P1", "P2", "P3"), formatter, 0, 1L);
+
+        assertEquals(List.of("id,name", "P1,Nồi", "P2,Bình"), Files.readAllLines(folder.resolve("out.csv")));
+        assertEquals(List.of("id,name", "P2,Bình", "P3,Ấm"), joinRows(fileProcessor.readWithChanges("out.csv", 0)));
+
+        fileProcessor.writeChanges("out.csv", "id,name", current, Set.of(), formatter, 0, 2L);
+
+        assertEquals(List.of("id,name", "P2,Bình", "P3,Ấm"), Files.readAllLines(folder.resolve("out.csv")));
+        assertEquals(List.of("id,name", "P2,Bình", "P3,Ấm"), joinRows(fileProcessor.readWithChanges("out.csv", 0)));
+    }
+
+    @Test
+    void compactChangesFoldsLogIntoOutputAndSkipsCutEntries() throws IOException {
+        FileProcessor<String> fileProcessor = new FileProcessor<>(folder.toString());
+        CSVFormatter<String> formatter = (row, out) -> out.append(row);
+        Map<String, String> current = new LinkedHashMap<>();
+        current.put("P1", "P1,Nồi");
+        current.put("P2", "P2,Bình");
+        fileProcessor.writeChanges("out.csv", "id,name", current, Set.of(), formatter, 0, 1L);
+        current.remove("P1");
+        current.put("P3", "P3,Ấm");
+        fileProcessor.writeChanges("out.csv", "id,name", current, Set.of("P1", "P3"), formatter, 0, 1L);
+        Files.writeString(folder.resolve("out.csv.changes"), "+\n-,\n?,P2\n", StandardOpenOption.APPEND);
+
+        fileProcessor.compactChanges("out.csv");
+
+        assertEquals(List.of("id,name", "P2,Bình", "P3,Ấm"), Files.readAllLines(folder.resolve("out.csv")));
+        current.put("P2", "P2,Chén");
+        fileProcessor.writeChanges("out.csv", "id,name", current, Set.of("P2"), formatter, 0, 1L);
+
+        assertEquals(List.of("id,name", "P2,Bình", "P3,Ấm"), Files.readAllLines(folder.resolve("out.csv")));
+        assertEquals(List.of("id,name", "P2,Chén", "P3,Ấm"), joinRows(fileProcessor.readWithChanges("out.csv", 0)));
+    }
+
+    private List<String> joinRows(List<String[]> rows) {
+        List<String> lines = new ArrayList<>();
+        for (String[] row : rows) {
+            lines.add(String.join(",", row));
+        }
+        return lines;
+    }
+
+    private List<String> readAll(FileProcessor<String> fileProcessor) {
+        List<String> rows = new ArrayList<>();
+        fileProcessor.forEachRow("orders.csv", (values, lineNumber) -> rows.add(lineNumber + ":" + String.join("|", values)));
+        return rows;
+    }
+}
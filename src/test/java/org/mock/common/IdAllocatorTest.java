@@ -0,0 +1,93 @@
+package org.mock.common;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdAllocatorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void nextIdContinuesAfterExistingIdsAndAcrossRestarts() throws Exception {
+        Path sequenceFile = tempDir.resolve("StateFolder/orders.id.sequence");
+        IdAllocator allocator = new IdAllocator(sequenceFile, "ORD", 7, 10);
+        allocator.skipPast(List.of("ORD0004999", "ORD0000001", "CUS0374", "ORD12"));
+
+        assertEquals("ORD0005000", allocator.nextId());
+        assertEquals("ORD0005001", allocator.nextId());
+        assertEquals("5010", Files.readString(sequenceFile));
+
+        IdAllocator restarted = new IdAllocator(sequenceFile, "ORD", 7, 10);
+        restarted.skipPast(List.of("ORD0004999"));
+        assertEquals("ORD0005010", restarted.nextId());
+        assertEquals("5020", Files.readString(sequenceFile));
+    }
+
+    @Test
+    void nextIdFailsWhenNumbersRunOut() {
+        IdAllocator allocator = new IdAllocator(tempDir.resolve("ids.sequence"), "X", 1, 4);
+        allocator.skipPast(List.of("X7"));
+
+        assertEquals("X8", allocator.nextId());
+        assertEquals("X9", allocator.nextId());
+        assertThrows(IllegalStateException.class, allocator::nextId);
+    }
+
+    @Test
+    void nextIdFailsUntilSequenceCanBeReadAndWritten() throws Exception {
+        Path sequenceFile = tempDir.resolve("StateFolder/orders.id.sequence");
+        Files.writeString(tempDir.resolve("StateFolder"), "not a folder");
+        IdAllocator allocator = new IdAllocator(sequenceFile, "ORD", 7, 10);
+        allocator.skipPast(List.of("ORD0000041"));
+
+        assertThrows(IllegalStateException.class, allocator::nextId);
+        assertThrows(IllegalStateException.class, allocator::nextId);
+
+        Files.delete(tempDir.resolve("StateFolder"));
+        assertEquals("ORD0000042", allocator.nextId());
+        assertEquals("52", Files.readString(sequenceFile));
+
+        Files.writeString(sequenceFile, "5x");
+        IdAllocator restarted = new IdAllocator(sequenceFile, "ORD", 7, 10);
+        assertThrows(IllegalStateException.class, restarted::nextId);
+
+        Files.writeString(sequenceFile, "5000");
+        assertEquals("ORD0005000", restarted.nextId());
+        assertEquals("5010", Files.readString(sequenceFile));
+    }
+
+    @Test
+    void nextIdIsUniqueAcrossThreads() throws Exception {
+        IdAllocator allocator = new IdAllocator(tempDir.resolve("ids.sequence"), "ORD", 7, 100);
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            workers.add(executor.submit(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    assertTrue(ids.add(allocator.nextId()));
+                }
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        executor.shutdown();
+
+        assertEquals(20_000, ids.size());
+        assertTrue(ids.contains("ORD0000001") && ids.contains("ORD0020000"));
+    }
+}
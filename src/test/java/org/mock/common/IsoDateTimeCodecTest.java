@@ -0,0 +1,74 @@
+package org.mock.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IsoDateTimeCodecTest {
+
+    @Test
+    void parseMatchesOffsetDateTimeParse() {
+        IsoDateTimeCodec codec = new IsoDateTimeCodec();
+        Random random = new Random(13);
+        for (int i = 0; i < 100_000; i++) {
+            String text = randomTimestamp(random);
+            assertTrue(codec.parse(text), text);
+            OffsetDateTime expected = OffsetDateTime.parse(text);
+            assertEquals(expected.toEpochSecond(), codec.epochSecond(), text);
+            assertEquals(expected.getNano(), codec.nano(), text);
+            assertEquals(expected.getOffset(), codec.offset(), text);
+        }
+    }
+
+    @Test
+    void parseRejectsOtherShapesAndOutOfRangeFields() {
+        String[] invalid = {"", "2024-01-01T00:00:00Z", "2024-01-01T00:00:00+07:00", "2024-01-01T00:00:00.+07:00",
+                "2024-01-01T00:00:00.1234567890+07:00", "2024-01-01 00:00:00.1+07:00", "2024-1-01T00:00:00.1+07:00",
+                "2024-01-01T00:00:00.1+0700", "2024-01-01T00:00:00.1*07:00", "2024-01-01T00:00:00.1+07:00 ",
+                "2024-13-01T00:00:00.1+07:00", "2023-02-29T00:00:00.1+07:00", "2024-04-31T00:00:00.1+07:00",
+                "2024-01-01T24:00:00.1+07:00", "2024-01-01T00:60:00.1+07:00", "2024-01-01T00:00:60.1+07:00",
+                "2024-01-01T00:00:00.1+18:01", "2024-01-01T00:00:00.1+07:60", "2024-00-01T00:00:00.1+07:00",
+                "2024-01-00T00:00:00.1+07:00", "2024-01-01T00:00:00.1+07:0a"};
+        for (String text : invalid) {
+            assertFalse(IsoDateTimeCodec.isValid(text), text);
+        }
+        assertTrue(IsoDateTimeCodec.isValid("2024-02-29T23:59:59.999999999-18:00"));
+        assertTrue(IsoDateTimeCodec.isValid("2000-02-29T00:00:00.0+00:00"));
+    }
+
+    @Test
+    void appendMatchesOffsetDateTimeToString() {
+        Random random = new Random(31);
+        int[] nanos = {0, 1, 1_000, 1_000_000, 55_107_000, 120_000_000, 999_999_999};
+        for (int i = 0; i < 100_000; i++) {
+            long epochSecond = random.nextInt(2) == 0 ? random.nextInt(86_400 * 3)
+                    : (long) (random.nextDouble() * 253_402_300_799L);
+            int nano = i % 2 == 0 ? nanos[random.nextInt(nanos.length)] : random.nextInt(1_000_000_000);
+            ZoneOffset offset = IsoDateTimeCodec.offset((random.nextInt(2161) - 1080) * 60);
+            OffsetDateTime expected = OffsetDateTime.ofInstant(Instant.ofEpochSecond(epochSecond, nano), offset);
+            StringBuilder out = new StringBuilder();
+            IsoDateTimeCodec.append(out, epochSecond, nano, offset);
+            assertEquals(expected.toString(), out.toString());
+        }
+    }
+
+    private static String randomTimestamp(Random random) {
+        int fractionDigits = 1 + random.nextInt(9);
+        StringBuilder fraction = new StringBuilder();
+        for (int i = 0; i < fractionDigits; i++) {
+            fraction.append(random.nextInt(10));
+        }
+        int year = random.nextInt(10_000);
+        int month = 1 + random.nextInt(12);
+        int day = 1 + random.nextInt(month == 2 ? 28 : 30);
+        int offsetMinutes = random.nextInt(2161) - 1080;
+        return String.format("%04d-%02d-%02dT%02d:%02d:%02d.%s%s%02d:%02d", year, month, day,
+                random.nextInt(24), random.nextInt(60), random.nextInt(60), fraction,
+                offsetMinutes < 0 ? "-" : "+", Math.abs(offsetMinutes) / 60, Math.abs(offsetMinutes) % 60);
+    }
+}
@@ -0,0 +1,85 @@
+package org.mock.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CustomerStoreTest {
+
+    @Test
+    void updateChangesEveryKeyOrNone() {
+        CustomerStore store = new CustomerStore();
+        store.put(new Customer("C001", "John", "john@email.com", "0900000001"));
+        store.put(new Customer("C002", "Jane", "jane@email.com", "0900000002"));
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> store.update("0900000001", "C003", "John", "jane@email.com"));
+        assertEquals("Email jane@email.com already exists.", e.getMessage());
+        assertEquals("C001", store.findByPhone("0900000001").getId());
+        assertFalse(store.containsId("C003"));
+
+        assertTrue(store.update("0900000001", "C003", "Johnny", "johnny@email.com"));
+        assertFalse(store.containsId("C001"));
+        assertFalse(store.containsEmail("john@email.com"));
+        assertEquals("Johnny", store.findById("C003").getName());
+        assertSame(store.findById("C003"), store.findByEmail("johnny@email.com"));
+        assertFalse(store.update("0999999999", "C004", "Nobody", "nobody@email.com"));
+    }
+
+    @Test
+    void removeFreesEveryKeyAndKeepsOrder() {
+        CustomerStore store = new CustomerStore();
+        store.put(new Customer("C001", "John", "john@email.com", "0900000001"));
+        store.put(new Customer("C002", "Jane", "jane@email.com", "0900000002"));
+        store.put(new Customer("C003", "Bob", "bob@email.com", "0900000003"));
+
+        assertEquals("C002", store.removeByPhone("0900000002").getId());
+        assertNull(store.removeByPhone("0900000002"));
+        assertFalse(store.containsId("C002"));
+        assertFalse(store.containsEmail("jane@email.com"));
+        assertEquals(List.of("C001", "C003"), store.values().stream().map(Customer::getId).toList());
+        assertEquals(2, store.byPhoneNumber().size());
+        assertEquals("C003", store.byPhoneNumber().get("0900000003").getId());
+    }
+
+    @Test
+    void indexesMatchMapsAfterRandomChanges() {
+        Random random = new Random(20);
+        CustomerStore store = new CustomerStore();
+        Map<String, Customer> byPhone = new LinkedHashMap<>();
+        for (int step = 0; step < 20_000; step++) {
+            String phoneNumber = "09" + random.nextInt(3_000);
+            if (random.nextInt(3) == 0) {
+                assertSame(byPhone.remove(phoneNumber), store.removeByPhone(phoneNumber));
+            } else if (!byPhone.containsKey(phoneNumber)) {
+                Customer customer = new Customer("C" + step, "N", "e" + step + "@email.com", phoneNumber);
+                byPhone.put(phoneNumber, customer);
+                store.put(customer);
+            } else {
+                assertTrue(store.update(phoneNumber, "C" + step, "M", "e" + step + "@email.com"));
+            }
+        }
+
+        assertEquals(new ArrayList<>(byPhone.values()), store.values());
+        Map<String, Customer> byId = new HashMap<>();
+        byPhone.values().forEach(customer -> byId.put(customer.getId(), customer));
+        Set<String> ids = new HashSet<>();
+        store.forEachId(ids::add);
+        assertEquals(byId.keySet(), ids);
+        for (Customer customer : byPhone.values()) {
+            assertSame(customer, store.findByPhone(customer.getPhoneNumber()));
+            assertSame(customer, store.findById(customer.getId()));
+            assertSame(customer, store.findByEmail(customer.getEmail()));
+        }
+        assertNull(store.findById("C-missing"));
+    }
+}
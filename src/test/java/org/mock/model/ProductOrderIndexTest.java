@@ -0,0 +1,61 @@
+package org.mock.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductOrderIndexTest {
+
+    @Test
+    void mostOrderedProductIdsBreaksTiesByProductId() {
+        ProductOrderIndex index = new ProductOrderIndex();
+        index.add("O1", quantities("TK-B", "TK-A", "TK-C"));
+        index.add("O2", quantities("TK-C", "TK-B"));
+        index.add("O3", quantities("TK-D", "TK-A"));
+
+        assertEquals(List.of("TK-A", "TK-B", "TK-C"), index.mostOrderedProductIds(3));
+        assertEquals(List.of("TK-A"), index.mostOrderedProductIds(1));
+        assertTrue(index.mostOrderedProductIds(0).isEmpty());
+
+        index.remove("O3", quantities("TK-D", "TK-A"));
+        index.add("O3", quantities("TK-D"));
+        assertEquals(List.of("TK-B", "TK-C", "TK-A", "TK-D"), index.mostOrderedProductIds(10));
+    }
+
+    @Test
+    void mostOrderedProductIdsMatchesFullSort() {
+        Random random = new Random(17);
+        ProductOrderIndex index = new ProductOrderIndex();
+        Map<String, Integer> counts = new HashMap<>();
+        for (int order = 0; order < 2_000; order++) {
+            ProductQuantities.Builder builder = new ProductQuantities.Builder();
+            for (int line = 0; line < 1 + random.nextInt(4); line++) {
+                builder.put("RK" + random.nextInt(300), 1);
+            }
+            ProductQuantities productQuantities = builder.build();
+            index.add("O" + order, productQuantities);
+            productQuantities.keySet().forEach(productId -> counts.merge(productId, 1, Integer::sum));
+        }
+        List<String> expected = new ArrayList<>(counts.keySet());
+        expected.sort(Comparator.<String>comparingInt(counts::get).reversed().thenComparing(Comparator.naturalOrder()));
+
+        for (int k : new int[]{1, 3, 10, 299, 1_000}) {
+            assertEquals(expected.subList(0, Math.min(k, expected.size())), index.mostOrderedProductIds(k), "k=" + k);
+        }
+    }
+
+    private static ProductQuantities quantities(String... productIds) {
+        ProductQuantities.Builder builder = new ProductQuantities.Builder();
+        for (String productId : productIds) {
+            builder.put(productId, 1);
+        }
+        return builder.build();
+    }
+}
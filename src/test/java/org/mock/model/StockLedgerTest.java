@@ -0,0 +1,81 @@
+package org.mock.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StockLedgerTest {
+
+    @Test
+    void reserveTakesEveryLineOrNone() {
+        StockLedger ledger = StockLedger.of(List.of(new Product("SL-A", "A", 1.0, 5), new Product("SL-B", "B", 1.0, 2)));
+
+        assertEquals(1, ledger.reserve(quantities("SL-A", 3, "SL-B", 3)));
+        assertEquals(5, ledger.available("SL-A"));
+        assertEquals(2, ledger.available("SL-B"));
+
+        assertEquals(-1, ledger.reserve(quantities("SL-A", 3, "SL-B", 2)));
+        assertEquals(0, ledger.reserve(quantities("SL-A", 3)));
+        assertEquals(0, ledger.reserve(quantities("SL-UNKNOWN", 1)));
+        assertEquals(Map.of("SL-A", 2, "SL-B", 0), ledger.changedStock());
+
+        ledger.release(quantities("SL-B", 2));
+        assertEquals(Map.of("SL-A", 2), ledger.changedStock());
+    }
+
+    @Test
+    void replaceMovesOnlyTheDifference() {
+        StockLedger ledger = StockLedger.of(List.of(new Product("SL-C", "C", 1.0, 4), new Product("SL-D", "D", 1.0, 1)));
+        ProductQuantities held = quantities("SL-C", 3, "SL-D", 1);
+
+        assertEquals(-1, ledger.replace(held, quantities("SL-C", 7)));
+        assertEquals(0, ledger.available("SL-C"));
+        assertEquals(2, ledger.available("SL-D"));
+
+        assertEquals(1, ledger.replace(quantities("SL-C", 7), quantities("SL-C", 1, "SL-D", 3)));
+        assertEquals(0, ledger.available("SL-C"));
+        assertEquals(2, ledger.available("SL-D"));
+    }
+
+    @Test
+    void concurrentReservationsNeverOversell() throws Exception {
+        StockLedger ledger = StockLedger.of(List.of(new Product("SL-E", "E", 1.0, 1_000), new Product("SL-F", "F", 1.0, 700)));
+        ProductQuantities order = quantities("SL-E", 2, "SL-F", 1);
+        AtomicInteger reserved = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            workers.add(executor.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    if (ledger.reserve(order) < 0) {
+                        reserved.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        executor.shutdown();
+
+        assertEquals(500, reserved.get());
+        assertEquals(0, ledger.available("SL-E"));
+        assertEquals(200, ledger.available("SL-F"));
+    }
+
+    private static ProductQuantities quantities(Object... pairs) {
+        ProductQuantities.Builder builder = new ProductQuantities.Builder();
+        for (int i = 0; i < pairs.length; i += 2) {
+            builder.put((String) pairs[i], (Integer) pairs[i + 1]);
+        }
+        return builder.build();
+    }
+}
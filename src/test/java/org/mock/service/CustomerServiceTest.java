@@ -1,6 +1,8 @@
 package org.mock.service;
 
 import org.mock.common.FileProcessor;
+import org.mock.common.RowHandler;
+import org.mock.enums.DeletePolicyEnum;
 import org.mock.model.Customer;
 import org.mock.validate.CustomerValidator;
 import org.junit.jupiter.api.BeforeEach;
@@ -42,6 +44,16 @@ public class CustomerServiceTest {
         }
     }
 
+    private void stubOriginRows(List<String[]> data) {
+        doAnswer(invocation -> {
+            RowHandler handler = invocation.getArgument(1);
+            for (int i = 1; i < data.size(); i++) {
+                handler.handle(data.get(i), i);
+            }
+            return null;
+        }).when(fileProcessor).forEachRow(anyString(), any());
+    }
+
     @Test
     void testLoadCustomersSuccess() {
         List<String[]> mockData = new ArrayList<>();
@@ -49,7 +61,7 @@ public class CustomerServiceTest {
         mockData.add(new String[]{"C001", "John Doe", "john@email.com", "1234567890"});
         mockData.add(new String[]{"C002", "Jane Doe", "jane@email.com", "0987654321"});
 
-        when(fileProcessor.readFile(anyString())).thenReturn(mockData);
+        stubOriginRows(mockData);
 
         Collection<Customer> customers = customerService.loadCustomers();
 
@@ -68,7 +80,7 @@ public class CustomerServiceTest {
         mockData.add(new String[]{"ID", "Name", "Email", "PhoneNumber"});
         mockData.add(new String[]{"C001", "John Doe", "john@email.com", "1234567890"});
 
-        when(fileProcessor.readFile(anyString())).thenReturn(mockData);
+        stubOriginRows(mockData);
         doNothing().when(customerValidator).validateId(anyString(), anyBoolean());
         doNothing().when(customerValidator).validateName(anyString());
         doNothing().when(customerValidator).validateEmail(anyString(), anyBoolean());
@@ -83,6 +95,24 @@ public class CustomerServiceTest {
         verify(customerValidator).validatePhoneNumber(eq("1234567890"), anyBoolean());
     }
 
+    @Test
+    void testLoadCustomerIdsKeepsOnlyIds() {
+        List<String[]> mockData = new ArrayList<>();
+        mockData.add(new String[]{"ID", "Name", "Email", "PhoneNumber"});
+        mockData.add(new String[]{"C001", "John Doe", "john@email.com", "1234567890"});
+        mockData.add(new String[]{"C002", "Jane Doe"});
+
+        stubOriginRows(mockData);
+
+        int customerCount = customerService.loadCustomerIds();
+
+        assertEquals(1, customerCount);
+        assertTrue(customerService.containsCustomerId("C001"));
+        assertFalse(customerService.containsCustomerId("C002"));
+        verify(fileProcessor).writeErrorLog(anyString(), eq("Error on line 3: Invalid data length"));
+        verifyNoInteractions(customerValidator);
+    }
+
     @Test
     void testAddNewCustomersSuccess() {
         List<String[]> mockData = new ArrayList<>();
@@ -97,8 +127,8 @@ public class CustomerServiceTest {
 
         customerService.addNewCustomers();
 
-        verify(fileProcessor).writeFile(anyString(), anyList(), any(), anyString());
-        assertTrue(customerService.getCustomerIds().contains("C003"));
+        verify(fileProcessor).writeChanges(anyString(), anyString(), anyMap(), eq(Set.of("5555555555")), any(), anyInt(), anyLong());
+        assertTrue(customerService.containsCustomerId("C003"));
     }
 
     @Test
@@ -106,7 +136,7 @@ public class CustomerServiceTest {
         List<String[]> initialData = new ArrayList<>();
         initialData.add(new String[]{"ID", "Name", "Email", "PhoneNumber"});
         initialData.add(new String[]{"C001", "John Doe", "john@email.com", "1234567890"});
-        when(fileProcessor.readFile(anyString())).thenReturn(initialData);
+        stubOriginRows(initialData);
         customerService.loadCustomers();
 
         List<String[]> updateData = new ArrayList<>();
@@ -118,8 +148,9 @@ public class CustomerServiceTest {
 
         customerService.updateCustomers();
 
-        verify(fileProcessor, times(2)).readFile(anyString());
-        verify(fileProcessor).writeFile(anyString(), anyList(), any(), anyString());
+        verify(fileProcessor).forEachRow(anyString(), any());
+        verify(fileProcessor).readFile(anyString());
+        verify(fileProcessor).writeChanges(anyString(), anyString(), anyMap(), eq(Set.of("1234567890")), any(), anyInt(), anyLong());
     }
 
     @Test
@@ -128,7 +159,7 @@ public class CustomerServiceTest {
         initialData.add(new String[]{"ID", "Name", "Email", "PhoneNumber"});
         initialData.add(new String[]{"C001", "John Doe", "john@email.com", "1234567890"});
         initialData.add(new String[]{"C002", "Jane Doe", "jane@email.com", "0987654321"});
-        when(fileProcessor.readFile(anyString())).thenReturn(initialData);
+        stubOriginRows(initialData);
         customerService.loadCustomers();
 
         List<String[]> deleteData = new ArrayList<>();
@@ -138,8 +169,30 @@ public class CustomerServiceTest {
 
         customerService.deleteCustomers();
 
-        assertFalse(customerService.getCustomerIds().contains("C001"));
-        assertTrue(customerService.getCustomerIds().contains("C002"));
+        assertFalse(customerService.containsCustomerId("C001"));
+        assertTrue(customerService.containsCustomerId("C002"));
+    }
+
+    @Test
+    void deleteCustomersCascadesToTheirOrders() {
+        List<String[]> initialData = new ArrayList<>();
+        initialData.add(new String[]{"ID", "Name", "Email", "PhoneNumber"});
+        initialData.add(new String[]{"C001", "John Doe", "john@email.com", "1234567890"});
+        initialData.add(new String[]{"C002", "Jane Doe", "jane@email.com", "0987654321"});
+        stubOriginRows(initialData);
+        customerService.loadCustomers();
+
+        List<String[]> deleteData = new ArrayList<>();
+        deleteData.add(new String[]{"PhoneNumber"});
+        deleteData.add(new String[]{"1234567890"});
+        when(fileProcessor.readFile(anyString())).thenReturn(deleteData);
+        OrderReferences orders = mock(OrderReferences.class);
+
+        customerService.deleteCustomers(orders, DeletePolicyEnum.CASCADE);
+
+        verify(orders).deleteOrders(argThat(ids -> List.copyOf(ids).equals(List.of("C001"))));
+        assertFalse(customerService.containsCustomerId("C001"));
+        assertTrue(customerService.containsCustomerId("C002"));
     }
 
     @Test
@@ -148,7 +201,7 @@ public class CustomerServiceTest {
         mockData.add(new String[]{"ID", "Name", "Email", "PhoneNumber"});
         mockData.add(new String[]{"C001"});
 
-        when(fileProcessor.readFile(anyString())).thenReturn(mockData);
+        stubOriginRows(mockData);
 
         Collection<Customer> customers = customerService.loadCustomers();
 
@@ -189,7 +242,7 @@ public class CustomerServiceTest {
         List<String[]> initialData = new ArrayList<>();
         initialData.add(new String[]{"ID", "Name", "Email", "PhoneNumber"});
         initialData.add(new String[]{"C001", "John Doe", "john@email.com", "1234567890"});
-        when(fileProcessor.readFile(anyString())).thenReturn(initialData);
+        stubOriginRows(initialData);
         customerService.loadCustomers();
 
         List<String[]> newData = new ArrayList<>();
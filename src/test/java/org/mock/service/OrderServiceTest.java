@@ -1,8 +1,12 @@
 package org.mock.service;
 
 import org.mock.common.FileProcessor;
+import org.mock.common.RowHandler;
 import org.mock.model.Order;
+import org.mock.model.PriceChange;
 import org.mock.model.Product;
+import org.mock.model.ProductIdTable;
+import org.mock.model.ProductQuantities;
 import org.mock.util.MessageKeys;
 import org.mock.validate.OrderValidator;
 import org.junit.jupiter.api.BeforeEach;
@@ -18,6 +22,7 @@ import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -52,6 +57,24 @@ class OrderServiceTest {
         field.set(orderService, orderValidator);
     }
 
+    private void stubOriginRows(List<String[]> data) {
+        doAnswer(invocation -> {
+            RowHandler handler = invocation.getArgument(1);
+            for (int i = 1; i < data.size(); i++) {
+                handler.handle(data.get(i), i);
+            }
+            return null;
+        }).when(fileProcessor).forEachRow(eq(MessageKeys.FILE_PATH_ORDER), any());
+    }
+
+    private static Map<String, Product> products() {
+        Map<String, Product> productMap = new HashMap<>();
+        productMap.put("P001", new Product("P001", "Product 1", 30.0, 10));
+        productMap.put("P002", new Product("P002", "Product 2", 40.0, 5));
+        productMap.put("P003", new Product("P003", "Product 3", 50.0, 5));
+        return productMap;
+    }
+
     @Test
     void loadAndValidOrders_Success() {
         List<String[]> mockData = Arrays.asList(
@@ -60,21 +83,17 @@ class OrderServiceTest {
         );
 
         Set<String> customerIds = new HashSet<>(Collections.singletonList("C001"));
-        Map<String, Product> productMap = new HashMap<>();
-        Product product1 = new Product("P001", "Product 1", 30.0, 10);
-        Product product2 = new Product("P002", "Product 2", 40.0, 5);
-        productMap.put("P001", product1);
-        productMap.put("P002", product2);
+        Map<String, Product> productMap = products();
 
-        when(fileProcessor.readFile(MessageKeys.FILE_PATH_ORDER)).thenReturn(mockData);
-        when(customerService.getCustomerIds()).thenReturn(customerIds);
+        stubOriginRows(mockData);
+        when(customerService.containsCustomerId(anyString())).thenAnswer(invocation -> customerIds.contains(invocation.<String>getArgument(0)));
         when(productService.getAllProducts()).thenReturn(productMap);
 
-        doNothing().when(orderValidator).validateId(any(), anyBoolean(), anyBoolean());
-        doNothing().when(orderValidator).validateCustomerId(any(), anyBoolean());
-        doNothing().when(orderValidator).validateProductQuantities(any(), any());
-        doNothing().when(orderValidator).validateProductStock(any(), any());
-        doNothing().when(orderValidator).validateOrderDate(any());
+        doReturn(null).when(orderValidator).checkId(any(), anyBoolean(), anyBoolean());
+        doReturn(null).when(orderValidator).checkCustomerId(any(), anyBoolean());
+        doReturn(null).when(orderValidator).checkProductQuantities(any(), any());
+        doReturn(null).when(orderValidator).checkProductStock(any(), any());
+        doReturn(null).when(orderValidator).checkOrderDate(any());
 
         Collection<Order> result = orderService.loadAndValidOrders();
 
@@ -87,6 +106,39 @@ class OrderServiceTest {
         assertEquals(1, order.getProductQuantities().get("P002"));
     }
 
+    @Test
+    void loadAndValidOrders_WritesErrorsInOneBatch() {
+        List<String[]> mockData = Arrays.asList(
+                new String[]{"id", "customerId", "productQuantities", "orderDate"},
+                new String[]{"O001", "C001", "P001:2", "2024-01-01T00:00:00.5+07:00"},
+                new String[]{"O002", "C999", "P001:1", "2024-01-01T00:00:00.5+07:00"},
+                new String[]{"O003", "C001", "P001:11", "2024-01-01T00:00:00.5+07:00"},
+                new String[]{"O004", "C001", "P009:1", "2024-01-01T00:00:00.5+07:00"},
+                new String[]{"O005", "C001", "P001:1", "2024-13-01T00:00:00.5+07:00"},
+                new String[]{"O001", "C001", "P001:1", "2024-01-01T00:00:00.5+07:00"},
+                new String[]{"O006", "C001"}
+        );
+        Map<String, Product> productMap = products();
+
+        stubOriginRows(mockData);
+        Set<String> knownCustomerIds = Set.of("C001");
+        when(customerService.containsCustomerId(anyString())).thenAnswer(invocation -> knownCustomerIds.contains(invocation.<String>getArgument(0)));
+        when(productService.getAllProducts()).thenReturn(productMap);
+
+        Collection<Order> result = orderService.loadAndValidOrders();
+
+        assertEquals(1, result.size());
+        assertEquals(60.0, result.iterator().next().getTotalAmount());
+        verify(fileProcessor).writeErrorLogs(MessageKeys.FILE_ERROR, List.of(
+                "Error on line 2: Customer ID does not exist: C999",
+                "Error on line 3: Ordered quantity exceeds available stock for product ID: P001",
+                "Error on line 4: Invalid product ID: P009",
+                "Error on line 5: Invalid Order Date format: 2024-13-01T00:00:00.5+07:00",
+                "Error on line 6: Order ID already exists: O001",
+                "Error on line 7: Invalid data length"));
+        verify(fileProcessor, never()).writeErrorLog(any(), any());
+    }
+
 //    @Test
 //    void addNewOrders_Success() {
 //        List<String[]> mockData = Arrays.asList(
@@ -174,16 +226,187 @@ class OrderServiceTest {
         orderService.deleteOrders();
 
         assertTrue(orderMap.isEmpty());
-        verify(fileProcessor).writeFile(eq(MessageKeys.FILE_OUTPUT_ORDER), any(), any(), any());
+        verify(fileProcessor).writeChanges(eq(MessageKeys.FILE_OUTPUT_ORDER), any(), any(), eq(Set.of("O001")), any(), anyInt(), anyLong());
+    }
+
+    @Test
+    void deleteOrders_ReturnsTheirStock() {
+        List<String[]> mockData = Arrays.asList(
+                new String[]{"id", "customerId", "productQuantities", "orderDate"},
+                new String[]{"O001", "C001", "P001:2;P002:1", "2024-01-01T00:00:00+07:00"},
+                new String[]{"O002", "C001", "P002:3", "2024-01-01T00:00:00+07:00"}
+        );
+        Map<String, Product> productMap = products();
+        stubOriginRows(mockData);
+        when(productService.getAllProducts()).thenReturn(productMap);
+        when(fileProcessor.readFile(MessageKeys.FILE_PATH_DELETE_ORDER)).thenReturn(Arrays.asList(
+                new String[]{"id"},
+                new String[]{"O001"}));
+        orderService.loadOrders();
+
+        orderService.deleteOrders();
+
+        verify(productService).applyStockLevels(Map.of("P001", 12, "P002", 6));
+        assertEquals(Set.of("O002"), orderService.orders().keySet());
+    }
+
+    @Test
+    void updateOrders_LeavesRejectedOrderUnchanged() {
+        List<String[]> mockData = Arrays.asList(
+                new String[]{"id", "customerId", "productQuantities", "orderDate"},
+                new String[]{"O001", "C001", "P002:1", "2024-01-01T00:00:00+07:00"},
+                new String[]{"O002", "C001", "P002:3", "2024-01-01T00:00:00+07:00"}
+        );
+        Map<String, Product> productMap = products();
+        stubOriginRows(mockData);
+        when(productService.getAllProducts()).thenReturn(productMap);
+        when(fileProcessor.readFile(MessageKeys.FILE_PATH_EDIT_ORDER)).thenReturn(Arrays.asList(
+                new String[]{"id", "customerId", "productQuantities", "orderDate"},
+                new String[]{"O002", "", "P002:5", ""},
+                new String[]{"O001", "", "P002:5", "2024-02-01T00:00:00.5+07:00"}));
+        orderService.loadOrders();
+
+        orderService.updateOrders();
+
+        Order rejected = orderService.orders().get("O001");
+        assertEquals(1, rejected.getProductQuantities().get("P002"));
+        assertEquals(OffsetDateTime.parse("2024-01-01T00:00:00+07:00"), rejected.getOrderDate());
+        assertEquals(4000, rejected.getTotalCents());
+        assertEquals(List.of("O001", "O002"), orderIds(orderService.ordersWithAnyProduct(
+                new int[]{ProductIdTable.shared().codeOf("P002")})));
+        verify(fileProcessor).writeErrorLog(MessageKeys.FILE_ERROR,
+                "Error on line 2: Ordered quantity exceeds available stock for product ID: P002");
+        verify(fileProcessor).writeChanges(eq(MessageKeys.FILE_OUTPUT_ORDER), any(), any(), eq(Set.of("O002")), any(), anyInt(), anyLong());
+        verify(productService).applyStockLevels(Map.of("P002", 3));
+    }
+
+    @Test
+    void loadAndValidOrders_MergesParallelBatchesInFileOrder() {
+        List<String[]> mockData = new ArrayList<>();
+        mockData.add(new String[]{"id", "customerId", "productQuantities", "orderDate"});
+        List<String> expectedErrors = new ArrayList<>();
+        for (int i = 1; i <= 5_000; i++) {
+            String customerId = i % 10 == 0 ? "C999" : "C001";
+            mockData.add(new String[]{"O" + (i % 4_000), customerId, "P001:1", "2024-01-01T00:00:00.5+07:00"});
+            if (i % 10 == 0) {
+                expectedErrors.add("Error on line " + i + ": Customer ID does not exist: C999");
+            } else if (i > 4_000) {
+                expectedErrors.add("Error on line " + i + ": Order ID already exists: O" + (i - 4_000));
+            }
+        }
+        Map<String, Product> productMap = products();
+        stubOriginRows(mockData);
+        Set<String> knownCustomerIds = Set.of("C001");
+        when(customerService.containsCustomerId(anyString())).thenAnswer(invocation -> knownCustomerIds.contains(invocation.<String>getArgument(0)));
+        when(productService.getAllProducts()).thenReturn(productMap);
+
+        Collection<Order> result = orderService.loadAndValidOrders();
+
+        assertEquals(3_600, result.size());
+        verify(fileProcessor).writeErrorLogs(MessageKeys.FILE_ERROR, expectedErrors);
+    }
+
+    @Test
+    void ordersWithAnyProduct_FollowsLoadUpdateAndDelete() {
+        List<String[]> mockData = Arrays.asList(
+                new String[]{"id", "customerId", "productQuantities", "orderDate"},
+                new String[]{"O003", "C001", "P001:1;P002:1", "2024-01-01T00:00:00.5+07:00"},
+                new String[]{"O001", "C001", "P002:2", "2024-01-01T00:00:00.5+07:00"},
+                new String[]{"O002", "C001", "P003:1", "2024-01-01T00:00:00.5+07:00"}
+        );
+        Map<String, Product> productMap = products();
+        stubOriginRows(mockData);
+        when(productService.getAllProducts()).thenReturn(productMap);
+        when(fileProcessor.readFile(MessageKeys.FILE_PATH_EDIT_ORDER)).thenReturn(Arrays.asList(
+                new String[]{"id", "customerId", "productQuantities", "orderDate"},
+                new String[]{"O002", "", "P002:1", ""}));
+        when(fileProcessor.readFile(MessageKeys.FILE_PATH_DELETE_ORDER)).thenReturn(Arrays.asList(
+                new String[]{"id"},
+                new String[]{"O003"}));
+        ProductIdTable productIds = ProductIdTable.shared();
+        int[] p001AndP002 = {productIds.codeOf("P001"), productIds.codeOf("P002")};
+
+        orderService.loadOrders();
+        assertEquals(List.of("O001", "O003"), orderIds(orderService.ordersWithAnyProduct(p001AndP002)));
+
+        orderService.updateOrders();
+        assertEquals(List.of("O001", "O002", "O003"), orderIds(orderService.ordersWithAnyProduct(p001AndP002)));
+        assertTrue(orderService.ordersWithAnyProduct(new int[]{productIds.codeOf("P003")}).isEmpty());
+
+        orderService.deleteOrders();
+        assertEquals(List.of("O001", "O002"), orderIds(orderService.ordersWithAnyProduct(p001AndP002)));
+    }
+
+    @Test
+    void applyPriceChanges_MovesTotalsOfOrdersListingTheProduct() {
+        List<String[]> mockData = Arrays.asList(
+                new String[]{"id", "customerId", "productQuantities", "orderDate"},
+                new String[]{"O001", "C001", "P001:2;P002:1", "2024-01-01T00:00:00+07:00"},
+                new String[]{"O002", "C001", "P002:3", "2024-01-01T00:00:00+07:00"},
+                new String[]{"O003", "C001", "P003:1", "2024-01-01T00:00:00+07:00"}
+        );
+        Map<String, Product> productMap = products();
+        stubOriginRows(mockData);
+        when(productService.getAllProducts()).thenReturn(productMap);
+        orderService.loadOrders();
+
+        int repriced = orderService.applyPriceChanges(List.of(
+                new PriceChange("P002", 4000, 4550), new PriceChange("P001", 3000, 2500)));
+
+        assertEquals(2, repriced);
+        productMap.put("P001", new Product("P001", "Product 1", 25.0, 10));
+        productMap.put("P002", new Product("P002", "Product 2", 45.5, 5));
+        for (Order order : orderService.orders().values()) {
+            assertEquals(OrderService.calculateTotalCents(order, productMap, true), order.getTotalCents(), order.getId());
+        }
+        assertEquals(9550, orderService.orders().get("O001").getTotalCents());
+        verify(fileProcessor).writeChanges(eq(MessageKeys.FILE_OUTPUT_ORDER), any(), any(), eq(Set.of("O001", "O002")),
+                any(), anyInt(), anyLong());
+        assertEquals(0, orderService.applyPriceChanges(List.of(new PriceChange("P404", 100, 200))));
+    }
+
+    @Test
+    void orderReferences_FollowOrderChangesAndCascadeDeletes() {
+        List<String[]> mockData = Arrays.asList(
+                new String[]{"id", "customerId", "productQuantities", "orderDate"},
+                new String[]{"O001", "C001", "P001:1;P002:1", "2024-01-01T00:00:00+07:00"},
+                new String[]{"O002", "C002", "P002:2", "2024-01-01T00:00:00+07:00"},
+                new String[]{"O003", "C001", "P003:1", "2024-01-01T00:00:00+07:00"}
+        );
+        Map<String, Product> productMap = products();
+        stubOriginRows(mockData);
+        when(productService.getAllProducts()).thenReturn(productMap);
+        when(fileProcessor.readFile(MessageKeys.FILE_PATH_DELETE_ORDER)).thenReturn(Arrays.asList(
+                new String[]{"id"},
+                new String[]{"O003"}));
+        orderService.loadOrders();
+        OrderReferences byProduct = orderService.productReferences();
+        OrderReferences byCustomer = orderService.customerReferences();
+        assertEquals(2, byProduct.orderCount("P002"));
+        assertEquals(2, byCustomer.orderCount("C001"));
+        assertEquals(0, byProduct.orderCount("P404"));
+
+        orderService.deleteOrders();
+        assertEquals(1, byCustomer.orderCount("C001"));
+        assertEquals(0, byProduct.orderCount("P003"));
+
+        assertEquals(1, byCustomer.deleteOrders(List.of("C002", "C404")));
+        assertEquals(Set.of("O001"), orderService.orders().keySet());
+        assertEquals(1, byProduct.orderCount("P002"));
+
+        assertEquals(1, byProduct.deleteOrders(List.of("P001")));
+        assertTrue(orderService.orders().isEmpty());
+        assertEquals(0, byCustomer.orderCount("C001"));
+        assertEquals(0, byProduct.deleteOrders(List.of("P002")));
+    }
+
+    private static List<String> orderIds(List<Order> orders) {
+        return orders.stream().map(Order::getId).toList();
     }
 
     @Test
     void calculateTotalAmount_Success() {
-        Map<String, Product> productMap = new HashMap<>();
-        Product product1 = new Product("P001", "Product 1", 30.0, 10);
-        Product product2 = new Product("P002", "Product 2", 40.0, 5);
-        productMap.put("P001", product1);
-        productMap.put("P002", product2);
+        Map<String, Product> productMap = products();
 
         Map<String, Integer> productQuantities = new HashMap<>();
         productQuantities.put("P001", 2);
@@ -209,4 +432,37 @@ class OrderServiceTest {
         assertThrows(IllegalArgumentException.class, () ->
                 OrderService.calculateTotalAmount(order, productMap, true));
     }
-}
\ No newline at end of file
+
+    @Test
+    void parseProductQuantities_MatchesSplitParsing() {
+        String[] inputs = {"P0945:47;P0145:27;P0159:18", "P0595:3;P0063:24", "P001:2;P001:5", "", ";", "P1:",
+                ":5", "P1::5", "P1:5:", "P1:5::", ":::", "P1:5;;P2:6;", "P1;P2:3", "P1:+4", "P1:-2"};
+        for (String input : inputs) {
+            assertEquals(splitProductQuantities(input), orderService.parseProductQuantities(input), input);
+        }
+        assertThrows(NumberFormatException.class, () -> orderService.parseProductQuantities("P1:x"));
+    }
+
+    @Test
+    void parseProductQuantities_KeepsListedOrder() {
+        ProductQuantities productQuantities = orderService.parseProductQuantities("P0945:47;P0145:27;P0945:3;P0159:18");
+
+        assertEquals(List.of("P0945", "P0145", "P0159"), new ArrayList<>(productQuantities.keySet()));
+        assertEquals(3, productQuantities.get("P0945"));
+        assertEquals(18, productQuantities.quantity(2));
+        assertEquals(ProductIdTable.shared().codeOf("P0145"), productQuantities.productCode(1));
+        assertFalse(productQuantities.containsKey("P9999"));
+        assertThrows(UnsupportedOperationException.class, () -> productQuantities.put("P9999", 1));
+    }
+
+    private static Map<String, Integer> splitProductQuantities(String productQuantitiesStr) {
+        Map<String, Integer> productQuantities = new HashMap<>();
+        for (String pair : productQuantitiesStr.split(MessageKeys.CHAR_SPLIT_QUANTITY)) {
+            String[] parts = pair.split(MessageKeys.CHAR_SPLIT);
+            if (parts.length == 2) {
+                productQuantities.put(parts[0], Integer.valueOf(parts[1]));
+            }
+        }
+        return productQuantities;
+    }
+}
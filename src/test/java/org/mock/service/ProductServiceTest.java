@@ -1,7 +1,11 @@
 package org.mock.service;
 
 import org.mock.common.FileProcessor;
+import org.mock.common.RowHandler;
+import org.mock.enums.DeletePolicyEnum;
+import org.mock.model.PriceChange;
 import org.mock.model.Product;
+import org.mock.model.ProductCatalog;
 import org.mock.validate.ProductValidator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,6 +16,8 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -51,6 +57,16 @@ public class ProductServiceTest {
         }
     }
 
+    private void stubOriginRows(List<String[]> data) {
+        doAnswer(invocation -> {
+            RowHandler handler = invocation.getArgument(1);
+            for (int i = 1; i < data.size(); i++) {
+                handler.handle(data.get(i), i);
+            }
+            return null;
+        }).when(fileProcessor).forEachRow(anyString(), any());
+    }
+
     @Test
     void testLoadProductsSuccess() {
         List<String[]> mockData = new ArrayList<>();
@@ -58,7 +74,7 @@ public class ProductServiceTest {
         mockData.add(new String[]{"1", "Product1", "10.0", "100"});
         mockData.add(new String[]{"2", "Product2", "20.0", "200"});
 
-        when(fileProcessor.readFile(anyString())).thenReturn(mockData);
+        stubOriginRows(mockData);
 
         Collection<Product> products = productService.loadProducts();
 
@@ -75,7 +91,7 @@ public class ProductServiceTest {
         mockData.add(new String[]{"ID", "Name", "Price", "Stock"});
         mockData.add(new String[]{"1", "Product1", "10.0", "100"});
 
-        when(fileProcessor.readFile(anyString())).thenReturn(mockData);
+        stubOriginRows(mockData);
         doNothing().when(productValidator).validateId(anyString(), anyBoolean(), anyBoolean());
         doNothing().when(productValidator).validateName(anyString());
         doNothing().when(productValidator).validatePrice(anyString());
@@ -104,7 +120,7 @@ public class ProductServiceTest {
 
         productService.addNewProducts();
 
-        verify(fileProcessor).writeFile(anyString(), anyList(), any(), anyString());
+        verify(fileProcessor).writeChanges(anyString(), anyString(), anyMap(), eq(Set.of("3")), any(), anyInt(), anyLong());
         assertEquals(1, productService.getAllProducts().size());
         assertTrue(productService.getAllProducts().containsKey("3"));
     }
@@ -114,7 +130,7 @@ public class ProductServiceTest {
         List<String[]> initialData = new ArrayList<>();
         initialData.add(new String[]{"ID", "Name", "Price", "Stock"});
         initialData.add(new String[]{"1", "Product1", "10.0", "100"});
-        when(fileProcessor.readFile(anyString())).thenReturn(initialData);
+        stubOriginRows(initialData);
         productService.loadProducts();
 
         List<String[]> updateData = new ArrayList<>();
@@ -131,13 +147,61 @@ public class ProductServiceTest {
         assertEquals(150, updatedProduct.getStockAvailable());
     }
 
+    @Test
+    void updateProductsReturnsOnlyPriceChanges() {
+        List<String[]> initialData = new ArrayList<>();
+        initialData.add(new String[]{"ID", "Name", "Price", "Stock"});
+        initialData.add(new String[]{"1", "Product1", "10.0", "100"});
+        initialData.add(new String[]{"2", "Product2", "20.0", "200"});
+        stubOriginRows(initialData);
+        productService.loadProducts();
+
+        List<String[]> updateData = new ArrayList<>();
+        updateData.add(new String[]{"ID", "Name", "Price", "Stock"});
+        updateData.add(new String[]{"1", "Product1", "12.5", "100"});
+        updateData.add(new String[]{"2", "Renamed", "20.0", "150"});
+        updateData.add(new String[]{"1", "Product1", "11.0", "100"});
+        when(fileProcessor.readFile(anyString())).thenReturn(updateData);
+
+        List<PriceChange> priceChanges = productService.updateProducts();
+
+        assertEquals(List.of(new PriceChange("1", 1000, 1100)), priceChanges);
+        assertEquals(100, priceChanges.get(0).deltaCents());
+    }
+
+    @Test
+    void changesPublishNewCatalogAndLeaveOldOnesUntouched() {
+        List<String[]> initialData = new ArrayList<>();
+        initialData.add(new String[]{"ID", "Name", "Price", "Stock"});
+        initialData.add(new String[]{"1", "Product1", "10.0", "100"});
+        stubOriginRows(initialData);
+        productService.loadProducts();
+        ProductCatalog loaded = productService.getCatalog();
+
+        List<String[]> updateData = new ArrayList<>();
+        updateData.add(new String[]{"ID", "Name", "Price", "Stock"});
+        updateData.add(new String[]{"1", "Updated Product", "15.0", "150"});
+        when(fileProcessor.readFile(anyString())).thenReturn(updateData);
+        productService.updateProducts();
+        productService.applyStockLevels(Map.of("1", 140));
+
+        ProductCatalog current = productService.getCatalog();
+        assertEquals(loaded.version() + 2, current.version());
+        assertEquals("Product1", loaded.get("1").getName());
+        assertEquals(100, loaded.get("1").getStockAvailable());
+        assertEquals(15.0, current.get("1").getPrice());
+        assertEquals(140, current.get("1").getStockAvailable());
+        assertSame(current.products(), productService.getAllProducts());
+        assertThrows(UnsupportedOperationException.class, () -> current.products().remove("1"));
+    }
+
     @Test
     void testDeleteProductsSuccess() {
         List<String[]> initialData = new ArrayList<>();
         initialData.add(new String[]{"ID", "Name", "Price", "Stock"});
         initialData.add(new String[]{"1", "Product1", "10.0", "100"});
         initialData.add(new String[]{"2", "Product2", "20.0", "200"});
-        when(fileProcessor.readFile(anyString())).thenReturn(initialData);
+        stubOriginRows(initialData);
         productService.loadProducts();
 
         List<String[]> deleteData = new ArrayList<>();
@@ -152,13 +216,39 @@ public class ProductServiceTest {
         assertEquals(1, productService.getAllProducts().size());
     }
 
+    @Test
+    void deleteProductsBlocksProductsStillListedInOrders() {
+        List<String[]> initialData = new ArrayList<>();
+        initialData.add(new String[]{"ID", "Name", "Price", "Stock"});
+        initialData.add(new String[]{"1", "Product1", "10.0", "100"});
+        initialData.add(new String[]{"2", "Product2", "20.0", "200"});
+        stubOriginRows(initialData);
+        productService.loadProducts();
+
+        List<String[]> deleteData = new ArrayList<>();
+        deleteData.add(new String[]{"ID"});
+        deleteData.add(new String[]{"1"});
+        deleteData.add(new String[]{"2"});
+        when(fileProcessor.readFile(anyString())).thenReturn(deleteData);
+        OrderReferences orders = mock(OrderReferences.class);
+        when(orders.orderCount("1")).thenReturn(2);
+        when(orders.orderCount("2")).thenReturn(0);
+
+        productService.deleteProducts(orders, DeletePolicyEnum.BLOCK);
+
+        assertTrue(productService.getAllProducts().containsKey("1"));
+        assertFalse(productService.getAllProducts().containsKey("2"));
+        verify(fileProcessor).writeErrorLog(anyString(), eq("Error on line 2: Product 1 is still listed in 2 orders."));
+        verify(orders, never()).deleteOrders(any());
+    }
+
     @Test
     void testLoadProductsWithInvalidData() {
         List<String[]> mockData = new ArrayList<>();
         mockData.add(new String[]{"ID", "Name", "Price", "Stock"});
         mockData.add(new String[]{"1"});
 
-        when(fileProcessor.readFile(anyString())).thenReturn(mockData);
+        stubOriginRows(mockData);
 
         Collection<Product> products = productService.loadProducts();
 
@@ -172,7 +262,7 @@ public class ProductServiceTest {
         mockData.add(new String[]{"ID", "Name", "Price", "Stock"});
         mockData.add(new String[]{"1", "Product1", "invalid", "100"});
 
-        when(fileProcessor.readFile(anyString())).thenReturn(mockData);
+        stubOriginRows(mockData);
 
         Collection<Product> products = productService.loadProducts();
 
@@ -0,0 +1,47 @@
+package org.mock.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    @Test
+    void parseCentsReadsDecimalAmounts() {
+        assertEquals(9692, Money.parseCents("96.92"));
+        assertEquals(98100, Money.parseCents("981.0"));
+        assertEquals(1250, Money.parseCents("12.50"));
+        assertEquals(2500, Money.parseCents("25"));
+        assertEquals(50, Money.parseCents(".5"));
+        assertEquals(-325, Money.parseCents("-3.25"));
+        assertEquals(101, Money.parseCents("1.005"));
+        assertEquals(4400212, Money.parseCents("44002.12000000001"));
+        assertEquals(100000, Money.parseCents("1e3"));
+        assertEquals(750, Money.parseCents(" 7.5 "));
+        for (String invalid : new String[]{"", ".", "-", "abc", "1..2", "NaN", "Infinity"}) {
+            assertThrows(NumberFormatException.class, () -> Money.parseCents(invalid), invalid);
+        }
+    }
+
+    @Test
+    void appendMatchesDoubleToString() {
+        Random random = new Random(11);
+        long[] edges = {0, 1, 9, 10, 99, 100, 101, 110, 999_999_999, 1_000_000_000, 123_456_789_012L, -5, -1250};
+        for (long cents : edges) {
+            assertEquals(Double.toString(cents / 100.0), Money.toString(cents), String.valueOf(cents));
+        }
+        for (int i = 0; i < 100_000; i++) {
+            long cents = random.nextInt(2_000_000_000);
+            assertEquals(Double.toString(cents / 100.0), Money.toString(cents), String.valueOf(cents));
+        }
+    }
+
+    @Test
+    void fromDoubleUsesDecimalValue() {
+        assertEquals(10, Money.fromDouble(0.1));
+        assertEquals(3000, Money.fromDouble(30.0));
+        assertEquals(4400212, Money.fromDouble(44002.12000000001));
+    }
+}
@@ -0,0 +1,101 @@
+package org.mock.validate;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CustomerValidatorTest {
+    // one character of every class the patterns tell apart, plus case-folding and non-ASCII look-alikes
+    private static final char[] EMAIL_ALPHABET = {'a', 'Z', '7', '.', '_', '%', '+', '-', '@', '!', ' ', '\n', 'é', 'K'};
+    private static final char[] PHONE_ALPHABET = {'0', '5', 'x'};
+
+    @Test
+    void emailScannerMatchesPatternOnEveryShortString() {
+        char[] buffer = new char[6];
+        for (int length = 0; length <= buffer.length; length++) {
+            assertAllStrings(buffer, length, 0, EMAIL_ALPHABET, CustomerValidator.EMAIL_PATTERN, true);
+        }
+    }
+
+    @Test
+    void phoneScannerMatchesPatternOnEveryShortString() {
+        char[] buffer = new char[11];
+        for (int length = 0; length <= buffer.length; length++) {
+            assertAllStrings(buffer, length, 0, PHONE_ALPHABET, CustomerValidator.PHONE_PATTERN, false);
+        }
+    }
+
+    @Test
+    void scannersMatchPatternsForEveryCharacterAtEveryPosition() {
+        assertEveryCharacterAtEveryPosition("a.b@c-d.ef", CustomerValidator.EMAIL_PATTERN, true);
+        assertEveryCharacterAtEveryPosition("0123456789", CustomerValidator.PHONE_PATTERN, false);
+    }
+
+    @Test
+    void scannersMatchPatternsOnRandomStrings() {
+        Random random = new Random(21);
+        char[] emailChars = (new String(EMAIL_ALPHABET) + "bcXYZ019").toCharArray();
+        char[] phoneChars = "0123456789x٠".toCharArray();
+        for (int i = 0; i < 200_000; i++) {
+            char[] email = new char[7 + random.nextInt(20)];
+            for (int j = 0; j < email.length; j++) {
+                email[j] = emailChars[random.nextInt(emailChars.length)];
+            }
+            assertSameVerdict(new String(email), CustomerValidator.EMAIL_PATTERN, true);
+
+            char[] phoneNumber = new char[9 + random.nextInt(3)];
+            for (int j = 0; j < phoneNumber.length; j++) {
+                phoneNumber[j] = phoneChars[random.nextInt(phoneChars.length)];
+            }
+            assertSameVerdict(new String(phoneNumber), CustomerValidator.PHONE_PATTERN, false);
+        }
+    }
+
+    @Test
+    void validateEmailAndPhoneNumberUseTheScanners() {
+        CustomerValidator validator = new CustomerValidator();
+        assertDoesNotThrow(() -> validator.validateEmail("john.doe+shop@mail.example.COM", false));
+        assertDoesNotThrow(() -> validator.validatePhoneNumber("0912345678", false));
+
+        assertEquals("Invalid or duplicated email: john@example.c",
+                assertThrows(IllegalArgumentException.class, () -> validator.validateEmail("john@example.c", false)).getMessage());
+        assertThrows(IllegalArgumentException.class, () -> validator.validateEmail("john@example.com", true));
+        assertEquals("Invalid or duplicated phone number: 1912345678",
+                assertThrows(IllegalArgumentException.class, () -> validator.validatePhoneNumber("1912345678", false)).getMessage());
+        assertThrows(IllegalArgumentException.class, () -> validator.validatePhoneNumber("0912345678", true));
+    }
+
+    private static void assertAllStrings(char[] buffer, int length, int position, char[] alphabet, Pattern pattern, boolean email) {
+        if (position == length) {
+            assertSameVerdict(new String(buffer, 0, length), pattern, email);
+            return;
+        }
+        for (char c : alphabet) {
+            buffer[position] = c;
+            assertAllStrings(buffer, length, position + 1, alphabet, pattern, email);
+        }
+    }
+
+    private static void assertEveryCharacterAtEveryPosition(String valid, Pattern pattern, boolean email) {
+        char[] chars = valid.toCharArray();
+        for (int position = 0; position < chars.length; position++) {
+            char original = chars[position];
+            for (int c = Character.MIN_VALUE; c <= Character.MAX_VALUE; c++) {
+                chars[position] = (char) c;
+                assertSameVerdict(new String(chars), pattern, email);
+            }
+            chars[position] = original;
+        }
+    }
+
+    private static void assertSameVerdict(String input, Pattern pattern, boolean email) {
+        boolean expected = pattern.matcher(input).matches();
+        boolean actual = email ? CustomerValidator.isValidEmail(input) : CustomerValidator.isValidPhoneNumber(input);
+        if (expected != actual) {
+            fail("Scanner says " + actual + " but pattern says " + expected + " for \"" + input + "\"");
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.mock.view;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mock.common.FileProcessor;
+import org.mock.enums.DeletePolicyEnum;
+import org.mock.service.SearchService;
+import org.mock.util.MessageKeys;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SystemServerTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void cascadeDeleteRemovesOrdersOfDeletedProductsAndCustomers() throws Exception {
+        write(MessageKeys.FILE_PATH_PRODUCT, "id,name,price,stock", "P001,Product 1,10.0,100", "P002,Product 2,20.0,100");
+        write(MessageKeys.FILE_PATH_CUSTOMER, "id,name,email,phoneNumber",
+                "C001,John,john@email.com,0900000001", "C002,Jane,jane@email.com,0900000002");
+        write(MessageKeys.FILE_PATH_ORDER, "id,customerId,productQuantities,orderDate",
+                "ORD001,C001,P001:1;P002:1,2024-01-01T00:00:00+07:00",
+                "ORD002,C002,P002:2,2024-01-01T00:00:00+07:00",
+                "ORD003,C002,P002:1,2024-01-01T00:00:00+07:00");
+        write(MessageKeys.FILE_PATH_DELETE_PRODUCT, "id", "P001");
+        write(MessageKeys.FILE_PATH_DELETE_CUSTOMER, "phoneNumber", "0900000002");
+        Files.createDirectories(folder.resolve(MessageKeys.FILE_OUTPUT_ORDER).getParent());
+
+        SystemServer server = new SystemServer(folder.toString(), 0, false, DeletePolicyEnum.CASCADE,
+                SearchService.DEFAULT_TOP_PRODUCT_COUNT);
+        Thread serving = new Thread(server::serve);
+        serving.start();
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8)) {
+            out.println("2.3");
+            assertEquals("OK 2.3", in.readLine());
+            assertEquals(List.of("ORD002", "ORD003"), orderIds());
+
+            out.println("3.3");
+            assertEquals("OK 3.3", in.readLine());
+            assertTrue(orderIds().isEmpty());
+
+            out.println("shutdown");
+            assertEquals("OK shutdown", in.readLine());
+        }
+        serving.join(10_000);
+        assertFalse(serving.isAlive());
+    }
+
+    private void write(String fileName, String... lines) throws IOException {
+        Path file = folder.resolve(fileName);
+        Files.createDirectories(file.getParent());
+        Files.write(file, List.of(lines), StandardCharsets.UTF_8);
+    }
+
+    // order IDs in the output file with its change log applied
+    private List<String> orderIds() {
+        List<String[]> rows = new FileProcessor<String>(folder.toString()).readWithChanges(MessageKeys.FILE_OUTPUT_ORDER, 0);
+        return rows.subList(1, rows.size()).stream().map(row -> row[0]).sorted().toList();
+    }
+}